@@ -0,0 +1,115 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.MethodTree;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.VariableElement;
+import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST.CFGMethod;
+import org.checkerframework.dataflow.constantpropagation.Constant;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationStore;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationTransfer;
+import org.checkerframework.framework.flow.CFAnalysis;
+import org.checkerframework.framework.flow.CFCFGBuilder;
+import org.checkerframework.framework.flow.CFValue;
+import org.checkerframework.javacutil.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the construction of control flow graphs and {@link Analysis#performAnalysis} on them,
+ * for the synthetic methods of {@link BenchmarkSources#flow}. The analyses are the constant
+ * propagation of the dataflow framework and the flow-sensitive refinement of the Constant Value
+ * Checker. Each operation processes all methods of the class.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalysisBenchmark {
+
+    /** The number of methods in the class; method {@code i} has {@code i + 1} conditionals. */
+    @Param({"4", "16"})
+    public int methods;
+
+    private BenchmarkEnvironment environment;
+    private BaseAnnotatedTypeFactory factory;
+    private ClassTree classTree;
+    private List<MethodTree> methodTrees;
+
+    /** Control flow graphs of {@link #methodTrees}, as built for the dataflow framework. */
+    private List<ControlFlowGraph> cfgs;
+
+    /** Control flow graphs of {@link #methodTrees}, as built for the checker. */
+    private List<ControlFlowGraph> checkerCfgs;
+
+    @Setup
+    public void setup() {
+        environment =
+                BenchmarkEnvironment.create(
+                        ValueChecker.class, "Flow", BenchmarkSources.flow(methods));
+        factory = (BaseAnnotatedTypeFactory) environment.factory;
+        classTree = environment.getClassTree("Flow");
+        methodTrees = environment.getMethods(classTree);
+        cfgs = new ArrayList<ControlFlowGraph>();
+        checkerCfgs = new ArrayList<ControlFlowGraph>();
+        for (MethodTree method : methodTrees) {
+            cfgs.add(CFGBuilder.build(environment.root, environment.env, method, classTree));
+            checkerCfgs.add(
+                    new CFCFGBuilder(environment.checker, factory)
+                            .run(
+                                    environment.root,
+                                    environment.env,
+                                    new CFGMethod(method, classTree)));
+        }
+    }
+
+    @Benchmark
+    public void buildCfg(Blackhole bh) {
+        for (MethodTree method : methodTrees) {
+            bh.consume(CFGBuilder.build(environment.root, environment.env, method, classTree));
+        }
+    }
+
+    @Benchmark
+    public void constantPropagation(Blackhole bh) {
+        for (ControlFlowGraph cfg : cfgs) {
+            Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> analysis =
+                    new Analysis<>(environment.env, new ConstantPropagationTransfer());
+            analysis.performAnalysis(cfg);
+            bh.consume(analysis.getRegularExitStore());
+        }
+    }
+
+    @Benchmark
+    public void checkerAnalysis(Blackhole bh) {
+        for (ControlFlowGraph cfg : checkerCfgs) {
+            CFAnalysis analysis =
+                    new CFAnalysis(
+                            environment.checker,
+                            factory,
+                            Collections.<Pair<VariableElement, CFValue>>emptyList());
+            analysis.performAnalysis(cfg);
+            bh.consume(analysis.getRegularExitStore());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.checkerframework.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.common.value.ValueAnnotatedTypeFactory;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)} for identical
+ * mirrors, equal but distinct mirrors, and mirrors that differ only in their element values.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnnotationUtilsBenchmark {
+
+    private AnnotationMirror anno;
+    private AnnotationMirror equalAnno;
+    private AnnotationMirror otherAnno;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment environment =
+                BenchmarkEnvironment.create(ValueChecker.class, "Empty", BenchmarkSources.EMPTY);
+        ValueAnnotatedTypeFactory factory = (ValueAnnotatedTypeFactory) environment.factory;
+        anno = factory.createIntValAnnotation(Arrays.asList(1L, 2L, 3L, 4L));
+        equalAnno = factory.createIntValAnnotation(Arrays.asList(1L, 2L, 3L, 4L));
+        otherAnno = factory.createIntValAnnotation(Arrays.asList(1L, 2L, 3L, 5L));
+    }
+
+    @Benchmark
+    public boolean identical() {
+        return AnnotationUtils.areSame(anno, anno);
+    }
+
+    @Benchmark
+    public boolean equal() {
+        return AnnotationUtils.areSame(anno, equalAnno);
+    }
+
+    @Benchmark
+    public boolean different() {
+        return AnnotationUtils.areSame(anno, otherAnno);
+    }
+}
@@ -0,0 +1,192 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePathScanner;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
+import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.javacutil.TreeUtils;
+
+/**
+ * A live compiler and checker for use by benchmarks.
+ *
+ * <p>The environment compiles a single in-memory compilation unit with a checker as annotation
+ * processor, up to and including type-checking. The compiler is not closed afterwards, so that the
+ * trees, elements, and the type factory of the checker stay usable while the benchmarks run. The
+ * type factory is set to the compilation unit and has performed flow analysis on its top-level
+ * classes.
+ */
+public class BenchmarkEnvironment {
+
+    /** The processing environment of the compiler. */
+    public final ProcessingEnvironment env;
+
+    /** The checker that processed the compilation unit. */
+    public final BaseTypeChecker checker;
+
+    /** The type factory of {@link #checker}. */
+    public final GenericAnnotatedTypeFactory<?, ?, ?, ?> factory;
+
+    /** The compilation unit. */
+    public final CompilationUnitTree root;
+
+    /** The compiler task; kept to prevent it from being closed while the benchmark runs. */
+    private final JavacTask task;
+
+    private BenchmarkEnvironment(
+            JavacTask task,
+            ProcessingEnvironment env,
+            BaseTypeChecker checker,
+            CompilationUnitTree root) {
+        this.task = task;
+        this.env = env;
+        this.checker = checker;
+        this.factory = checker.getTypeFactory();
+        this.root = root;
+
+        factory.setRoot(root);
+        for (Tree decl : root.getTypeDecls()) {
+            if (decl instanceof ClassTree) {
+                factory.preProcessClassTree((ClassTree) decl);
+            }
+        }
+    }
+
+    /**
+     * Compile {@code source} with a checker of class {@code checkerClass}.
+     *
+     * @param checkerClass the checker to run
+     * @param className the name of the public class in {@code source}, in the default package
+     * @param source the Java source of the compilation unit
+     * @param options additional compiler options, such as "-AflowStoreCacheSize"
+     * @return the environment after type-checking
+     */
+    public static BenchmarkEnvironment create(
+            Class<? extends BaseTypeChecker> checkerClass,
+            String className,
+            String source,
+            String... options) {
+        BaseTypeChecker checker;
+        try {
+            checker = checkerClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            ErrorReporter.errorAbort("Could not instantiate " + checkerClass.getName(), e);
+            return null; // dead code
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        List<String> allOptions = new ArrayList<String>(Arrays.asList(options));
+        allOptions.add("-Anocheckjdk");
+        JavacTask task =
+                (JavacTask)
+                        compiler.getTask(
+                                new StringWriter(),
+                                null,
+                                diagnostics,
+                                allOptions,
+                                null,
+                                Collections.singletonList(new SourceFile(className, source)));
+        task.setProcessors(Collections.singletonList(checker));
+
+        CompilationUnitTree root;
+        try {
+            root = task.parse().iterator().next();
+            task.analyze();
+        } catch (IOException e) {
+            ErrorReporter.errorAbort("Could not compile " + className, e);
+            return null; // dead code
+        }
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                ErrorReporter.errorAbort("Could not compile " + className + ": " + diagnostic);
+            }
+        }
+
+        ProcessingEnvironment env =
+                JavacProcessingEnvironment.instance(((JavacTaskImpl) task).getContext());
+        return new BenchmarkEnvironment(task, env, checker, root);
+    }
+
+    /** @return the element of the class {@code name} of the compilation unit */
+    public TypeElement getTypeElement(String name) {
+        return env.getElementUtils().getTypeElement(name);
+    }
+
+    /** @return the first class named {@code name} in the compilation unit */
+    public ClassTree getClassTree(final String name) {
+        final List<ClassTree> result = new ArrayList<ClassTree>();
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitClass(ClassTree node, Void p) {
+                if (node.getSimpleName().contentEquals(name)) {
+                    result.add(node);
+                }
+                return super.visitClass(node, p);
+            }
+        }.scan(root, null);
+        if (result.isEmpty()) {
+            ErrorReporter.errorAbort("No class " + name + " in the compilation unit");
+        }
+        return result.get(0);
+    }
+
+    /** @return all methods of {@code classTree}, excluding constructors */
+    public List<MethodTree> getMethods(ClassTree classTree) {
+        List<MethodTree> result = new ArrayList<MethodTree>();
+        for (Tree member : classTree.getMembers()) {
+            if (member instanceof MethodTree && !TreeUtils.isConstructor((MethodTree) member)) {
+                result.add((MethodTree) member);
+            }
+        }
+        return result;
+    }
+
+    /** @return all fields of {@code classTree} */
+    public List<VariableTree> getFields(ClassTree classTree) {
+        List<VariableTree> result = new ArrayList<VariableTree>();
+        for (Tree member : classTree.getMembers()) {
+            if (member instanceof VariableTree) {
+                result.add((VariableTree) member);
+            }
+        }
+        return result;
+    }
+
+    /** A Java source file that is kept in memory. */
+    private static class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.checkerframework.benchmarks;
+
+/** The Java sources that the benchmarks compile and check. */
+public class BenchmarkSources {
+
+    private BenchmarkSources() {
+        throw new AssertionError("Class BenchmarkSources cannot be instantiated.");
+    }
+
+    /** An empty class, for benchmarks that only need a type factory. */
+    public static final String EMPTY = "public class Empty {}";
+
+    /** A class whose fields have types of different shapes, annotated with value qualifiers. */
+    public static final String TYPES =
+            "import java.util.List;\n"
+                    + "import java.util.Map;\n"
+                    + "import org.checkerframework.common.value.qual.*;\n"
+                    + "public class Types {\n"
+                    + "    @IntVal({1, 2}) int small;\n"
+                    + "    @IntVal({1, 2, 3}) int large;\n"
+                    + "    int unknown;\n"
+                    + "    List<@StringVal(\"a\") String> strings;\n"
+                    + "    List<String> anyStrings;\n"
+                    + "    List<@IntVal(1) Integer> ints;\n"
+                    + "    List<? extends Number> numbers;\n"
+                    + "    Map<String, List<@IntVal(1) Integer>> nested;\n"
+                    + "    Map<String, List<Integer>> anyNested;\n"
+                    + "    @ArrayLen(3) int[] array;\n"
+                    + "    int[] anyArray;\n"
+                    + "}\n";
+
+    /**
+     * A class {@code Flow} with {@code methods} methods of growing size. Method {@code mi} has
+     * {@code i + 1} local variables that are updated in nested conditionals inside a loop, so its
+     * control flow graph has a number of blocks linear in {@code i}.
+     */
+    public static String flow(int methods) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("public class Flow {\n");
+        for (int i = 0; i < methods; i++) {
+            sb.append("    int m").append(i).append("(int p) {\n");
+            for (int j = 0; j <= i; j++) {
+                sb.append("        int v").append(j).append(" = ").append(j).append(";\n");
+            }
+            sb.append("        while (p > 0) {\n");
+            for (int j = 0; j <= i; j++) {
+                sb.append("            if (p % ").append(j + 2).append(" == 0) {\n");
+                sb.append("                v").append(j).append(" = v").append(j).append(" + p;\n");
+                sb.append("            } else {\n");
+                sb.append("                v").append(j).append(" = ").append(j).append(";\n");
+                sb.append("            }\n");
+            }
+            sb.append("            p--;\n");
+            sb.append("        }\n");
+            sb.append("        return v").append(i).append(";\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * A class {@code Stores} with a method {@code branches} that assigns {@code locals} local
+     * variables differently in the two branches of a conditional. The calls {@code thenEnd()} and
+     * {@code elseEnd()} mark the ends of the branches.
+     */
+    public static String stores(int locals) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("public class Stores {\n");
+        sb.append("    void thenEnd() {}\n");
+        sb.append("    void elseEnd() {}\n");
+        sb.append("    void branches(boolean b) {\n");
+        for (int j = 0; j < locals; j++) {
+            sb.append("        int v").append(j).append(" = ").append(j).append(";\n");
+            sb.append("        String s").append(j).append(" = \"").append(j).append("\";\n");
+        }
+        sb.append("        if (b) {\n");
+        for (int j = 0; j < locals; j += 2) {
+            sb.append("            v").append(j).append(" = ").append(j + 1).append(";\n");
+        }
+        sb.append("            thenEnd();\n");
+        sb.append("        } else {\n");
+        for (int j = 0; j < locals; j += 3) {
+            sb.append("            s").append(j).append(" = \"x\";\n");
+        }
+        sb.append("            elseEnd();\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package org.checkerframework.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AnnotatedTypeMirror#deepCopy()} on the field types of {@link
+ * BenchmarkSources#TYPES}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeepCopyBenchmark {
+
+    @Param({"small", "strings", "numbers", "nested", "array"})
+    public String field;
+
+    private AnnotatedTypeMirror type;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment environment =
+                BenchmarkEnvironment.create(ValueChecker.class, "Types", BenchmarkSources.TYPES);
+        type = TypeHierarchyBenchmark.fieldTypes(environment).get(field);
+    }
+
+    @Benchmark
+    public AnnotatedTypeMirror deepCopy() {
+        return type.deepCopy();
+    }
+}
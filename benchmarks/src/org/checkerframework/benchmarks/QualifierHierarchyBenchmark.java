@@ -0,0 +1,96 @@
+package org.checkerframework.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.util.Elements;
+import org.checkerframework.common.value.ValueAnnotatedTypeFactory;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.common.value.qual.BottomVal;
+import org.checkerframework.common.value.qual.UnknownVal;
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link QualifierHierarchy#leastUpperBound} and {@link
+ * QualifierHierarchy#greatestLowerBound} of the Constant Value Checker, whose hierarchy is a
+ * {@link org.checkerframework.framework.util.MultiGraphQualifierHierarchy}. Each operation is the
+ * average over all pairs of a fixed set of qualifiers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QualifierHierarchyBenchmark {
+
+    /** The number of qualifiers in {@link #qualifiers}. */
+    private static final int QUALIFIERS = 8;
+
+    private QualifierHierarchy hierarchy;
+    private AnnotationMirror[] qualifiers;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment environment =
+                BenchmarkEnvironment.create(ValueChecker.class, "Empty", BenchmarkSources.EMPTY);
+        ValueAnnotatedTypeFactory factory = (ValueAnnotatedTypeFactory) environment.factory;
+        Elements elements = environment.env.getElementUtils();
+        hierarchy = factory.getQualifierHierarchy();
+        qualifiers =
+                new AnnotationMirror[] {
+                    AnnotationUtils.fromClass(elements, UnknownVal.class),
+                    AnnotationUtils.fromClass(elements, BottomVal.class),
+                    factory.createIntValAnnotation(Arrays.asList(1L, 2L)),
+                    factory.createIntValAnnotation(Arrays.asList(2L, 3L)),
+                    factory.createDoubleValAnnotation(Arrays.asList(1.0)),
+                    factory.createStringAnnotation(Arrays.asList("a", "b")),
+                    factory.createBooleanAnnotation(Arrays.asList(true)),
+                    factory.createArrayLenAnnotation(Arrays.asList(3))
+                };
+        assert qualifiers.length == QUALIFIERS;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUALIFIERS * QUALIFIERS)
+    public void leastUpperBound(Blackhole bh) {
+        for (AnnotationMirror a1 : qualifiers) {
+            for (AnnotationMirror a2 : qualifiers) {
+                bh.consume(hierarchy.leastUpperBound(a1, a2));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUALIFIERS * QUALIFIERS)
+    public void greatestLowerBound(Blackhole bh) {
+        for (AnnotationMirror a1 : qualifiers) {
+            for (AnnotationMirror a2 : qualifiers) {
+                bh.consume(hierarchy.greatestLowerBound(a1, a2));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUALIFIERS * QUALIFIERS)
+    public void isSubtype(Blackhole bh) {
+        for (AnnotationMirror a1 : qualifiers) {
+            for (AnnotationMirror a2 : qualifiers) {
+                bh.consume(hierarchy.isSubtype(a1, a2));
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.util.TreeScanner;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.framework.flow.CFStore;
+import org.checkerframework.javacutil.TreeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link org.checkerframework.framework.flow.CFAbstractStore#leastUpperBound} of the
+ * stores at the ends of the two branches of a conditional, as computed by the Constant Value
+ * Checker for {@link BenchmarkSources#stores}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreBenchmark {
+
+    /** The number of local variables of each type in the stores. */
+    @Param({"4", "32"})
+    public int locals;
+
+    private CFStore thenStore;
+    private CFStore elseStore;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment environment =
+                BenchmarkEnvironment.create(
+                        ValueChecker.class, "Stores", BenchmarkSources.stores(locals));
+        final BaseAnnotatedTypeFactory factory = (BaseAnnotatedTypeFactory) environment.factory;
+        final Map<String, CFStore> stores = new HashMap<String, CFStore>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void visitMethodInvocation(MethodInvocationTree node, Void p) {
+                String name = TreeUtils.elementFromUse(node).getSimpleName().toString();
+                stores.put(name, factory.getStoreBefore(node));
+                return super.visitMethodInvocation(node, p);
+            }
+        }.scan(environment.root, null);
+        thenStore = stores.get("thenEnd");
+        elseStore = stores.get("elseEnd");
+    }
+
+    @Benchmark
+    public CFStore leastUpperBound() {
+        return thenStore.leastUpperBound(elseStore);
+    }
+}
@@ -0,0 +1,98 @@
+package org.checkerframework.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.stub.StubIndex;
+import org.checkerframework.framework.stub.StubParser;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.stubparser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures processing the jdk.astub file that is shipped with a checker: parsing it, and applying
+ * it with {@link StubParser} to the maps of annotated types and declaration annotations. The two
+ * are measured separately, because StubParser parses each stub file only once per JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StubParserBenchmark {
+
+    /** The checker whose jdk.astub file is parsed. */
+    @Param({
+        "org.checkerframework.checker.interning.InterningChecker",
+        "org.checkerframework.checker.signature.SignatureChecker",
+        "org.checkerframework.checker.guieffect.GuiEffectChecker",
+        "org.checkerframework.checker.regex.RegexChecker"
+    })
+    public String checkerName;
+
+    private BenchmarkEnvironment environment;
+    private byte[] stub;
+
+    @Setup
+    public void setup() throws ClassNotFoundException, IOException {
+        Class<? extends BaseTypeChecker> checkerClass =
+                Class.forName(checkerName).asSubclass(BaseTypeChecker.class);
+        environment = BenchmarkEnvironment.create(checkerClass, "Empty", BenchmarkSources.EMPTY);
+        InputStream in = checkerClass.getResourceAsStream("jdk.astub");
+        if (in == null) {
+            ErrorReporter.errorAbort("No jdk.astub for " + checkerName);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        stub = out.toByteArray();
+    }
+
+    /** Parses the stub file, bypassing the JVM-wide cache of parsed stub files of StubParser. */
+    @Benchmark
+    public StubIndex parse() throws ParseException {
+        return StubIndex.parse(stub, false);
+    }
+
+    /**
+     * Applies the stub file. After the first invocation, StubParser takes the parsed stub file from
+     * its cache, so this measures the application alone.
+     */
+    @Benchmark
+    public Map<Element, AnnotatedTypeMirror> apply() {
+        Map<Element, AnnotatedTypeMirror> types = new HashMap<Element, AnnotatedTypeMirror>();
+        Map<String, Set<AnnotationMirror>> declAnnos = new HashMap<String, Set<AnnotationMirror>>();
+        StubParser parser =
+                new StubParser(
+                        "jdk.astub",
+                        new ByteArrayInputStream(stub),
+                        environment.factory,
+                        environment.env);
+        parser.parse(types, declAnnos);
+        return types;
+    }
+}
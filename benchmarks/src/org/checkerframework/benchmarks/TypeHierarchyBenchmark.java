@@ -0,0 +1,74 @@
+package org.checkerframework.benchmarks;
+
+import com.sun.source.tree.VariableTree;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.TypeHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link org.checkerframework.framework.type.DefaultTypeHierarchy#isSubtype} on the
+ * field types of {@link BenchmarkSources#TYPES}. Each pair names the subtype and the supertype
+ * field.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeHierarchyBenchmark {
+
+    @Param({
+        "small:large",
+        "large:small",
+        "strings:anyStrings",
+        "ints:numbers",
+        "nested:anyNested",
+        "array:anyArray"
+    })
+    public String pair;
+
+    private TypeHierarchy hierarchy;
+    private AnnotatedTypeMirror subtype;
+    private AnnotatedTypeMirror supertype;
+
+    @Setup
+    public void setup() {
+        BenchmarkEnvironment environment =
+                BenchmarkEnvironment.create(ValueChecker.class, "Types", BenchmarkSources.TYPES);
+        hierarchy = environment.factory.getTypeHierarchy();
+        Map<String, AnnotatedTypeMirror> fieldTypes = fieldTypes(environment);
+        String[] names = pair.split(":");
+        subtype = fieldTypes.get(names[0]);
+        supertype = fieldTypes.get(names[1]);
+    }
+
+    /** @return the annotated types of the fields of the class "Types", by field name */
+    static Map<String, AnnotatedTypeMirror> fieldTypes(BenchmarkEnvironment environment) {
+        Map<String, AnnotatedTypeMirror> result = new HashMap<String, AnnotatedTypeMirror>();
+        for (VariableTree field : environment.getFields(environment.getClassTree("Types"))) {
+            result.put(
+                    field.getName().toString(), environment.factory.getAnnotatedType(field));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public boolean isSubtype() {
+        return hierarchy.isSubtype(subtype, supertype);
+    }
+}
@@ -1,9 +1,11 @@
 package org.checkerframework.checker.formatter;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IllegalFormatConversionException;
 import java.util.IllegalFormatException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.MissingFormatArgumentException;
 import java.util.regex.Matcher;
@@ -71,6 +73,37 @@ public class FormatUtil {
      */
     public static ConversionCategory[] formatParameterCategories(String format)
             throws IllegalFormatException {
+        ConversionCategory[] res = categoriesCache.get(format);
+        if (res == null) {
+            res = computeFormatParameterCategories(format);
+            categoriesCache.put(format, res);
+        }
+        return res.clone();
+    }
+
+    /** The maximal number of format strings in {@link #categoriesCache}. */
+    private static final int CATEGORIES_CACHE_SIZE = 500;
+
+    /**
+     * The categories of the most recently used valid format strings, keyed by the format string
+     * alone: neither the {@link java.util.Formatter} syntax nor {@link #tryFormatSatisfiability}
+     * depends on the locale.
+     */
+    private static final Map<String, ConversionCategory[]> categoriesCache =
+            Collections.synchronizedMap(
+                    new LinkedHashMap<String, ConversionCategory[]>(16, 0.75f, true) {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(
+                                Map.Entry<String, ConversionCategory[]> eldest) {
+                            return size() > CATEGORIES_CACHE_SIZE;
+                        }
+                    });
+
+    /** Compute the result of {@link #formatParameterCategories}. */
+    private static ConversionCategory[] computeFormatParameterCategories(String format)
+            throws IllegalFormatException {
         tryFormatSatisfiability(format);
 
         int last = -1; // index of last argument referenced
@@ -112,7 +145,7 @@ public class FormatUtil {
     private static final String formatSpecifier =
             "%(\\d+\\$)?([-#+ 0,(\\<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])";
 
-    private static Pattern fsPattern = Pattern.compile(formatSpecifier);
+    private static final Pattern fsPattern = Pattern.compile(formatSpecifier);
 
     private static int indexFromFormat(Matcher m) {
         int index;
@@ -6,8 +6,10 @@ import java.text.DecimalFormatSymbols;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IllegalFormatException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -35,8 +37,41 @@ public class I18nFormatUtil {
      */
     public static I18nConversionCategory[] formatParameterCategories(String format)
             throws IllegalFormatException {
-        tryFormatSatisfiability(format);
-        I18nConversion[] cs = MessageFormatParser.parse(format);
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        String key = locale + " " + format;
+        I18nConversionCategory[] res = categoriesCache.get(key);
+        if (res == null) {
+            res = computeFormatParameterCategories(format, locale);
+            categoriesCache.put(key, res);
+        }
+        return res.clone();
+    }
+
+    /** The maximal number of format strings in {@link #categoriesCache}. */
+    private static final int CATEGORIES_CACHE_SIZE = 500;
+
+    /**
+     * Maps "locale format" to the categories of the format string in that locale, because date
+     * and number subformats are validated with the default format locale. A locale's string
+     * representation contains no space.
+     */
+    private static final Map<String, I18nConversionCategory[]> categoriesCache =
+            Collections.synchronizedMap(
+                    new LinkedHashMap<String, I18nConversionCategory[]>(16, 0.75f, true) {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(
+                                Map.Entry<String, I18nConversionCategory[]> eldest) {
+                            return size() > CATEGORIES_CACHE_SIZE;
+                        }
+                    });
+
+    /** Compute the result of {@link #formatParameterCategories} for the given locale. */
+    private static I18nConversionCategory[] computeFormatParameterCategories(
+            String format, Locale locale) throws IllegalFormatException {
+        new MessageFormat(format, locale).format((Object[]) null);
+        I18nConversion[] cs = MessageFormatParser.parse(format, locale);
 
         int max_index = -1;
         Map<Integer, I18nConversionCategory> conv = new HashMap<Integer, I18nConversionCategory>();
@@ -105,24 +140,28 @@ public class I18nFormatUtil {
         }
     }
 
+    /**
+     * A parser for one format string. The state of the parser is kept in an instance, so that
+     * format strings can be parsed concurrently.
+     */
     private static class MessageFormatParser {
 
-        public static int maxOffset;
+        public int maxOffset;
 
         /** The locale to use for formatting numbers and dates. */
-        private static Locale locale;
+        private final Locale locale;
 
         /** An array of formatters, which are used to format the arguments. */
-        private static List<I18nConversionCategory> categories;
+        private final List<I18nConversionCategory> categories;
 
         /**
          * The argument numbers corresponding to each formatter. (The formatters are stored in the
          * order they occur in the pattern, not in the order in which the arguments are specified.)
          */
-        private static List<Integer> argumentIndices;
+        private final List<Integer> argumentIndices;
 
         /** The number of subformats */
-        private static int numFormat;
+        private int numFormat;
 
         // Indices for segments
         private static final int SEG_RAW = 0;
@@ -154,27 +193,33 @@ public class I18nFormatUtil {
             "", "short", "medium", "long", "full"
         };
 
-        public static I18nConversion[] parse(String pattern) {
-            MessageFormatParser.categories = new ArrayList<I18nConversionCategory>();
-            MessageFormatParser.argumentIndices = new ArrayList<Integer>();
-            MessageFormatParser.locale = Locale.getDefault(Locale.Category.FORMAT);
-            applyPattern(pattern);
+        private MessageFormatParser(Locale locale) {
+            this.categories = new ArrayList<I18nConversionCategory>();
+            this.argumentIndices = new ArrayList<Integer>();
+            this.locale = locale;
+        }
+
+        public static I18nConversion[] parse(String pattern, Locale locale) {
+            MessageFormatParser parser = new MessageFormatParser(locale);
+            parser.applyPattern(pattern);
 
-            I18nConversion[] ret = new I18nConversion[MessageFormatParser.numFormat];
-            for (int i = 0; i < MessageFormatParser.numFormat; i++) {
-                ret[i] = new I18nConversion(argumentIndices.get(i), categories.get(i));
+            I18nConversion[] ret = new I18nConversion[parser.numFormat];
+            for (int i = 0; i < parser.numFormat; i++) {
+                ret[i] =
+                        new I18nConversion(
+                                parser.argumentIndices.get(i), parser.categories.get(i));
             }
             return ret;
         }
 
-        private static void applyPattern(String pattern) {
+        private void applyPattern(String pattern) {
             StringBuilder[] segments = new StringBuilder[4];
             // Allocate only segments[SEG_RAW] here. The rest are
             // allocated on demand.
             segments[SEG_RAW] = new StringBuilder();
 
             int part = SEG_RAW;
-            MessageFormatParser.numFormat = 0;
+            numFormat = 0;
             boolean inQuote = false;
             int braceStack = 0;
             maxOffset = -1;
@@ -254,7 +299,7 @@ public class I18nFormatUtil {
             }
         }
 
-        private static void makeFormat(
+        private void makeFormat(
                 int position, int offsetNumber, StringBuilder[] textSegments) {
             String[] segments = new String[textSegments.length];
             for (int i = 0; i < textSegments.length; i++) {
@@ -1,6 +1,7 @@
 package org.checkerframework.checker.initialization;
 
 import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.LiteralTree;
 import com.sun.source.tree.MethodTree;
@@ -13,10 +14,13 @@ import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.tree.JCTree;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -98,6 +102,18 @@ public abstract class InitializationAnnotatedTypeFactory<
     // Cache for the initialization annotations
     protected final Set<Class<? extends Annotation>> initAnnos;
 
+    /**
+     * The bit that represents each field in {@link InitializationStore#initializedFields}. Bits
+     * are assigned on demand and are only valid within one compilation unit.
+     */
+    private final Map<VariableElement, Integer> fieldBits = new HashMap<>();
+
+    /** The field represented by each bit, the inverse of {@link #fieldBits}. */
+    private final List<VariableElement> fieldsByBit = new ArrayList<>();
+
+    /** The fields of each class of the current compilation unit, see {@link #getClassFields}. */
+    private final Map<ClassTree, ClassFields> classFields = new HashMap<>();
+
     public InitializationAnnotatedTypeFactory(BaseTypeChecker checker, boolean useFbc) {
         super(checker, true);
 
@@ -134,6 +150,90 @@ public abstract class InitializationAnnotatedTypeFactory<
         return initAnnos;
     }
 
+    @Override
+    public void setRoot(CompilationUnitTree root) {
+        super.setRoot(root);
+        // The stores of the previous compilation unit, which use the bits, are discarded.
+        fieldBits.clear();
+        fieldsByBit.clear();
+        classFields.clear();
+    }
+
+    /** @return the bit that represents {@code field} in a set of fields, assigning one if needed */
+    int getFieldBit(VariableElement field) {
+        Integer bit = fieldBits.get(field);
+        if (bit == null) {
+            bit = fieldsByBit.size();
+            fieldBits.put(field, bit);
+            fieldsByBit.add(field);
+        }
+        return bit;
+    }
+
+    /** @return the bit that represents {@code field}, or -1 if no bit was assigned to it */
+    int getExistingFieldBit(Element field) {
+        Integer bit = fieldBits.get(field);
+        return bit == null ? -1 : bit;
+    }
+
+    /** @return the fields whose bits are set in {@code bits} */
+    List<VariableElement> getFieldsOfBits(BitSet bits) {
+        List<VariableElement> fields = new ArrayList<>(bits.cardinality());
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            fields.add(fieldsByBit.get(bit));
+        }
+        return fields;
+    }
+
+    /**
+     * The fields of a class, with their bits and whether they have the invariant annotation,
+     * computed once per class so that checking a store does not compute the type of every field.
+     */
+    private static final class ClassFields {
+        /** The fields of the class, in declaration order. */
+        final List<VariableTree> fields;
+
+        /** The bit of each field, at the same index as in {@link #fields}. */
+        final int[] bits;
+
+        /** The bits of the non-static fields that have the invariant annotation. */
+        final BitSet instanceInvariantFields = new BitSet();
+
+        /** The bits of the static fields that have the invariant annotation. */
+        final BitSet staticInvariantFields = new BitSet();
+
+        ClassFields(List<VariableTree> fields) {
+            this.fields = fields;
+            this.bits = new int[fields.size()];
+        }
+    }
+
+    /** @return the fields of {@code clazz}, see {@link ClassFields} */
+    private ClassFields getClassFields(ClassTree clazz) {
+        ClassFields result = classFields.get(clazz);
+        if (result == null) {
+            result = new ClassFields(InitializationChecker.getAllFields(clazz));
+            AnnotationMirror invariant = getFieldInvariantAnnotation();
+            for (int i = 0; i < result.fields.size(); i++) {
+                VariableTree field = result.fields.get(i);
+                VariableElement fieldElem = TreeUtils.elementFromDeclaration(field);
+                int bit = getFieldBit(fieldElem);
+                result.bits[i] = bit;
+                // Does this field need to satisfy the invariant? This depends on the declared
+                // type of the field, not on the refined type of its initializer.
+                if (getAnnotatedTypeLhs(field).hasEffectiveAnnotation(invariant)) {
+                    if (ElementUtils.isStatic(fieldElem)) {
+                        result.staticInvariantFields.set(bit);
+                    } else {
+                        result.instanceInvariantFields.set(bit);
+                    }
+                }
+            }
+            classFields.put(clazz, result);
+        }
+        return result;
+    }
+
     /** Is the annotation {@code anno} an initialization qualifier? */
     protected boolean isInitializationAnnotation(AnnotationMirror anno) {
         assert anno != null;
@@ -449,23 +549,22 @@ public abstract class InitializationAnnotatedTypeFactory<
             TreePath path,
             boolean isStatic,
             List<? extends AnnotationMirror> receiverAnnotations) {
-        ClassTree currentClass = TreeUtils.enclosingClass(path);
-        List<VariableTree> fields = InitializationChecker.getAllFields(currentClass);
+        ClassFields classFields = getClassFields(TreeUtils.enclosingClass(path));
+        BitSet uninitialized =
+                (BitSet)
+                        (isStatic
+                                        ? classFields.staticInvariantFields
+                                        : classFields.instanceInvariantFields)
+                                .clone();
+        uninitialized.andNot(store.initializedFields);
         List<VariableTree> violatingFields = new ArrayList<>();
-        AnnotationMirror invariant = getFieldInvariantAnnotation();
-        for (VariableTree field : fields) {
-            if (isUnused(field, receiverAnnotations)) {
-                continue; // don't consider unused fields
-            }
-            VariableElement fieldElem = TreeUtils.elementFromDeclaration(field);
-            if (ElementUtils.isStatic(fieldElem) == isStatic) {
-                // Does this field need to satisfy the invariant?
-                if (getAnnotatedType(field).hasEffectiveAnnotation(invariant)) {
-                    // Has the field been initialized?
-                    if (!store.isFieldInitialized(fieldElem)) {
-                        violatingFields.add(field);
-                    }
-                }
+        if (uninitialized.isEmpty()) {
+            return violatingFields;
+        }
+        for (int i = 0; i < classFields.fields.size(); i++) {
+            VariableTree field = classFields.fields.get(i);
+            if (uninitialized.get(classFields.bits[i]) && !isUnused(field, receiverAnnotations)) {
+                violatingFields.add(field);
             }
         }
         return violatingFields;
@@ -478,20 +577,16 @@ public abstract class InitializationAnnotatedTypeFactory<
     public List<VariableTree> getInitializedInvariantFields(Store store, TreePath path) {
         // TODO: Instead of passing the TreePath around, can we use
         // getCurrentClassTree?
-        ClassTree currentClass = TreeUtils.enclosingClass(path);
-        List<VariableTree> fields = InitializationChecker.getAllFields(currentClass);
+        ClassFields classFields = getClassFields(TreeUtils.enclosingClass(path));
+        BitSet initialized = (BitSet) classFields.instanceInvariantFields.clone();
+        initialized.and(store.initializedFields);
         List<VariableTree> initializedFields = new ArrayList<>();
-        AnnotationMirror invariant = getFieldInvariantAnnotation();
-        for (VariableTree field : fields) {
-            VariableElement fieldElem = TreeUtils.elementFromDeclaration(field);
-            if (!ElementUtils.isStatic(fieldElem)) {
-                // Does this field need to satisfy the invariant?
-                if (getAnnotatedType(field).hasEffectiveAnnotation(invariant)) {
-                    // Has the field been initialized?
-                    if (store.isFieldInitialized(fieldElem)) {
-                        initializedFields.add(field);
-                    }
-                }
+        if (initialized.isEmpty()) {
+            return initializedFields;
+        }
+        for (int i = 0; i < classFields.fields.size(); i++) {
+            if (initialized.get(classFields.bits[i])) {
+                initializedFields.add(classFields.fields.get(i));
             }
         }
         return initializedFields;
@@ -1,7 +1,7 @@
 package org.checkerframework.checker.initialization;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -33,12 +33,21 @@ import org.checkerframework.javacutil.AnnotationUtils;
 public class InitializationStore<V extends CFAbstractValue<V>, S extends InitializationStore<V, S>>
         extends CFAbstractStore<V, S> {
 
-    /** The list of fields that are initialized. */
-    protected final Set<VariableElement> initializedFields;
+    /**
+     * The fields that are initialized, as the bits assigned by {@link
+     * InitializationAnnotatedTypeFactory#getFieldBit}. Copying, comparing and joining stores are
+     * word operations, even for classes with many fields.
+     */
+    protected final BitSet initializedFields;
 
     public InitializationStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
         super(analysis, sequentialSemantics);
-        initializedFields = new HashSet<>();
+        initializedFields = new BitSet();
+    }
+
+    /** @return the type factory, which assigns the bits of {@link #initializedFields} */
+    private InitializationAnnotatedTypeFactory<?, ?, ?, ?> getInitializationTypeFactory() {
+        return (InitializationAnnotatedTypeFactory<?, ?, ?, ?>) analysis.getTypeFactory();
     }
 
     /**
@@ -56,7 +65,7 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
         }
         super.insertValue(r, value);
         InitializationAnnotatedTypeFactory<?, ?, ?, ?> atypeFactory =
-                (InitializationAnnotatedTypeFactory<?, ?, ?, ?>) analysis.getTypeFactory();
+                getInitializationTypeFactory();
         QualifierHierarchy qualifierHierarchy = atypeFactory.getQualifierHierarchy();
         AnnotationMirror invariantAnno = atypeFactory.getFieldInvariantAnnotation();
         for (AnnotationMirror a : value.getAnnotations()) {
@@ -108,7 +117,7 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
     /** A copy constructor. */
     public InitializationStore(S other) {
         super(other);
-        initializedFields = new HashSet<>(other.initializedFields);
+        initializedFields = (BitSet) other.initializedFields.clone();
     }
 
     /**
@@ -120,7 +129,7 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
         boolean fieldOnThisReference = field.getReceiver() instanceof ThisReference;
         boolean staticField = field.isStatic();
         if (fieldOnThisReference || staticField) {
-            initializedFields.add(field.getField());
+            addInitializedField(field.getField());
         }
     }
 
@@ -129,12 +138,13 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
      * that the field belongs to the current class, or is a static field).
      */
     public void addInitializedField(VariableElement f) {
-        initializedFields.add(f);
+        initializedFields.set(getInitializationTypeFactory().getFieldBit(f));
     }
 
     /** Is the field identified by the element {@code f} initialized? */
     public boolean isFieldInitialized(Element f) {
-        return initializedFields.contains(f);
+        int bit = getInitializationTypeFactory().getExistingFieldBit(f);
+        return bit >= 0 && initializedFields.get(bit);
     }
 
     @Override
@@ -144,8 +154,9 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
         }
         @SuppressWarnings("unchecked")
         S other = (S) o;
-        for (Element field : other.initializedFields) {
-            if (!initializedFields.contains(field)) {
+        BitSet otherFields = other.initializedFields;
+        for (int bit = otherFields.nextSetBit(0); bit >= 0; bit = otherFields.nextSetBit(bit + 1)) {
+            if (!initializedFields.get(bit)) {
                 return false;
             }
         }
@@ -157,8 +168,8 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
         S result = super.leastUpperBound(other);
 
         // Set intersection for initializedFields.
-        result.initializedFields.addAll(other.initializedFields);
-        result.initializedFields.retainAll(initializedFields);
+        result.initializedFields.or(other.initializedFields);
+        result.initializedFields.and(initializedFields);
 
         return result;
     }
@@ -166,7 +177,9 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
     @Override
     protected void internalVisualize(CFGVisualizer<V, S, ?> viz) {
         super.internalVisualize(viz);
-        viz.visualizeStoreKeyVal("initialized fields", initializedFields);
+        viz.visualizeStoreKeyVal(
+                "initialized fields",
+                getInitializationTypeFactory().getFieldsOfBits(initializedFields));
     }
 
     public Map<FieldAccess, V> getFieldValues() {
@@ -0,0 +1,108 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.checkerframework.checker.formatter.FormatUtil;
+import org.checkerframework.checker.formatter.qual.ConversionCategory;
+import org.junit.Test;
+
+public class FormatUtilTest {
+
+    /** More distinct format strings than the cache of FormatUtil holds. */
+    private static final int FORMATS = 2000;
+
+    private static final int THREADS = 8;
+
+    /** A valid format string that differs for every {@code i}. */
+    private static String format(int i) {
+        int k = i % 10;
+        return "%" + (k + 1) + "$d %" + (k + 2) + "$s " + i;
+    }
+
+    /** The categories of {@link #format(int)}. */
+    private static ConversionCategory[] categories(int i) {
+        int k = i % 10;
+        ConversionCategory[] res = new ConversionCategory[k + 2];
+        Arrays.fill(res, ConversionCategory.UNUSED);
+        res[k] = ConversionCategory.INT;
+        res[k + 1] = ConversionCategory.GENERAL;
+        return res;
+    }
+
+    @Test
+    public void lookupsReturnIndependentArrays() {
+        String format = "%d %s %f";
+        ConversionCategory[] expected = {
+            ConversionCategory.INT, ConversionCategory.GENERAL, ConversionCategory.FLOAT
+        };
+        ConversionCategory[] first = FormatUtil.formatParameterCategories(format);
+        ConversionCategory[] second = FormatUtil.formatParameterCategories(format);
+        assertNotSame(first, second);
+        assertArrayEquals(expected, first);
+
+        Arrays.fill(first, ConversionCategory.NULL);
+        assertArrayEquals(expected, second);
+        assertArrayEquals(expected, FormatUtil.formatParameterCategories(format));
+    }
+
+    @Test
+    public void lookupsDoNotDependOnLocale() {
+        Locale saved = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            for (Locale locale : Arrays.asList(Locale.US, Locale.GERMANY, new Locale("ar"))) {
+                Locale.setDefault(Locale.Category.FORMAT, locale);
+                for (int i = 0; i < 20; i++) {
+                    assertArrayEquals(
+                            categories(i), FormatUtil.formatParameterCategories(format(i)));
+                }
+            }
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, saved);
+        }
+    }
+
+    @Test
+    public void concurrentLookups() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t * FORMATS / THREADS;
+                results.add(
+                        executor.submit(
+                                new Callable<Void>() {
+                                    @Override
+                                    public Void call() {
+                                        for (int round = 0; round < 3; round++) {
+                                            for (int j = 0; j < FORMATS; j++) {
+                                                int i = (offset + j) % FORMATS;
+                                                ConversionCategory[] res =
+                                                        FormatUtil.formatParameterCategories(
+                                                                format(i));
+                                                assertArrayEquals(format(i), categories(i), res);
+                                                // Must not affect any other lookup.
+                                                Arrays.fill(res, ConversionCategory.NULL);
+                                            }
+                                        }
+                                        return null;
+                                    }
+                                }));
+            }
+            for (Future<Void> result : results) {
+                // Rethrows an assertion failure of the thread.
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
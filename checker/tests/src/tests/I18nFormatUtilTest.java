@@ -0,0 +1,116 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.checkerframework.checker.i18nformatter.I18nFormatUtil;
+import org.checkerframework.checker.i18nformatter.qual.I18nConversionCategory;
+import org.junit.Test;
+
+public class I18nFormatUtilTest {
+
+    /** More distinct format strings than the cache of I18nFormatUtil holds. */
+    private static final int FORMATS = 2000;
+
+    private static final int THREADS = 8;
+
+    /** A valid format string that differs for every {@code i}. */
+    private static String format(int i) {
+        int k = i % 10;
+        return "{" + k + ", number} {" + (k + 1) + ", date} " + i;
+    }
+
+    /** The categories of {@link #format(int)}. */
+    private static I18nConversionCategory[] categories(int i) {
+        int k = i % 10;
+        I18nConversionCategory[] res = new I18nConversionCategory[k + 2];
+        Arrays.fill(res, I18nConversionCategory.UNUSED);
+        res[k] = I18nConversionCategory.NUMBER;
+        res[k + 1] = I18nConversionCategory.DATE;
+        return res;
+    }
+
+    @Test
+    public void lookupsReturnIndependentArrays() {
+        String format = "{0} {1, number} {2, date}";
+        I18nConversionCategory[] expected = {
+            I18nConversionCategory.GENERAL,
+            I18nConversionCategory.NUMBER,
+            I18nConversionCategory.DATE
+        };
+        I18nConversionCategory[] first = I18nFormatUtil.formatParameterCategories(format);
+        I18nConversionCategory[] second = I18nFormatUtil.formatParameterCategories(format);
+        assertNotSame(first, second);
+        assertArrayEquals(expected, first);
+
+        Arrays.fill(first, I18nConversionCategory.UNUSED);
+        assertArrayEquals(expected, second);
+        assertArrayEquals(expected, I18nFormatUtil.formatParameterCategories(format));
+        assertTrue(I18nFormatUtil.hasFormat(format, expected));
+    }
+
+    @Test
+    public void lookupsUnderSeveralLocales() {
+        String format = "{0, number, #,##0.00} {1, date, yyyy-MM-dd}";
+        I18nConversionCategory[] expected = {
+            I18nConversionCategory.NUMBER, I18nConversionCategory.DATE
+        };
+        Locale saved = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            for (Locale locale : Arrays.asList(Locale.US, Locale.GERMANY, new Locale("ar"))) {
+                Locale.setDefault(Locale.Category.FORMAT, locale);
+                assertArrayEquals(expected, I18nFormatUtil.formatParameterCategories(format));
+                assertFalse(I18nFormatUtil.isFormat("{0, number, #.#.#}"));
+                assertFalse(I18nFormatUtil.isFormat("{0, date, yyyy-MM-dd q}"));
+            }
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, saved);
+        }
+    }
+
+    @Test
+    public void concurrentLookups() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t * FORMATS / THREADS;
+                results.add(
+                        executor.submit(
+                                new Callable<Void>() {
+                                    @Override
+                                    public Void call() {
+                                        for (int round = 0; round < 3; round++) {
+                                            for (int j = 0; j < FORMATS; j++) {
+                                                int i = (offset + j) % FORMATS;
+                                                I18nConversionCategory[] res =
+                                                        I18nFormatUtil.formatParameterCategories(
+                                                                format(i));
+                                                assertArrayEquals(format(i), categories(i), res);
+                                                // Must not affect any other lookup.
+                                                Arrays.fill(res, I18nConversionCategory.UNUSED);
+                                            }
+                                        }
+                                        return null;
+                                    }
+                                }));
+            }
+            for (Future<Void> result : results) {
+                // Rethrows an assertion failure of the thread.
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
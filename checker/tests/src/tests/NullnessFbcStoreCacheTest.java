@@ -0,0 +1,32 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.checker.nullness.AbstractNullnessChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Runs the tests of {@link NullnessFbcTest} with the dataflow store cache enabled. The expected
+ * diagnostics are those of the tests without the cache.
+ */
+public class NullnessFbcStoreCacheTest extends CheckerFrameworkPerDirectoryTest {
+
+    public NullnessFbcStoreCacheTest(List<File> testFiles) {
+        super(
+                testFiles,
+                org.checkerframework.checker.nullness.NullnessChecker.class,
+                "nullness",
+                "-AcheckPurityAnnotations",
+                "-Anomsgtext",
+                "-Xlint:deprecation",
+                "-Alint=forbidnonnullarraycomponents,"
+                        + AbstractNullnessChecker.LINT_REDUNDANTNULLCOMPARISON,
+                "-AflowStoreCacheSize=100");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"nullness", "initialization/fbc", "all-systems"};
+    }
+}
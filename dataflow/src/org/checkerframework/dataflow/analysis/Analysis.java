@@ -10,14 +10,12 @@ import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.PriorityQueue;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
@@ -67,16 +65,23 @@ public class Analysis<
     /** Instance of the types utility. */
     protected final Types types;
 
-    /** Then stores before every basic block (assumed to be 'no information' if not present). */
-    protected IdentityHashMap<Block, S> thenStores;
+    /**
+     * Then stores before every basic block, indexed by block ID (assumed to be 'no information' if
+     * {@code null}).
+     */
+    protected S[] thenStores;
 
-    /** Else stores before every basic block (assumed to be 'no information' if not present). */
-    protected IdentityHashMap<Block, S> elseStores;
+    /**
+     * Else stores before every basic block, indexed by block ID (assumed to be 'no information' if
+     * {@code null}).
+     */
+    protected S[] elseStores;
 
     /**
-     * The transfer inputs before every basic block (assumed to be 'no information' if not present).
+     * The transfer inputs before every basic block, indexed by block ID (assumed to be 'no
+     * information' if {@code null}).
      */
-    protected IdentityHashMap<Block, TransferInput<A, S>> inputs;
+    protected TransferInput<A, S>[] inputs;
 
     /** The stores after every return statement. */
     protected IdentityHashMap<ReturnNode, TransferResult<A, S>> storesAtReturnStatements;
@@ -84,8 +89,8 @@ public class Analysis<
     /** The worklist used for the fix-point iteration. */
     protected Worklist worklist;
 
-    /** Abstract values of nodes. */
-    protected IdentityHashMap<Node, A> nodeValues;
+    /** Abstract values of nodes, indexed by node ID. */
+    protected A[] nodeValues;
 
     /** Map from (effectively final) local variable elements to their abstract value. */
     public HashMap<Element, A> finalLocalValues;
@@ -358,8 +363,8 @@ public class Analysis<
         boolean nodeValueChanged = false;
 
         if (newVal != null) {
-            A oldVal = nodeValues.get(node);
-            nodeValues.put(node, newVal);
+            A oldVal = nodeValues[node.getId()];
+            nodeValues[node.getId()] = newVal;
             nodeValueChanged = !Objects.equals(oldVal, newVal);
         }
 
@@ -402,14 +407,16 @@ public class Analysis<
     }
 
     /** Initialize the analysis with a new control flow graph. */
+    @SuppressWarnings("unchecked") // generic array creation
     protected void init(ControlFlowGraph cfg) {
         this.cfg = cfg;
-        thenStores = new IdentityHashMap<>();
-        elseStores = new IdentityHashMap<>();
-        inputs = new IdentityHashMap<>();
+        int numberOfBlocks = cfg.getNumberOfBlocks();
+        thenStores = (S[]) new Store<?>[numberOfBlocks];
+        elseStores = (S[]) new Store<?>[numberOfBlocks];
+        inputs = (TransferInput<A, S>[]) new TransferInput<?, ?>[numberOfBlocks];
         storesAtReturnStatements = new IdentityHashMap<>();
         worklist = new Worklist(cfg);
-        nodeValues = new IdentityHashMap<>();
+        nodeValues = (A[]) new AbstractValue<?>[cfg.getNumberOfNodes()];
         finalLocalValues = new HashMap<>();
         worklist.add(cfg.getEntryBlock());
 
@@ -438,17 +445,16 @@ public class Analysis<
             // nothing to do
         }
         S initialStore = transferFunction.initialStore(underlyingAST, parameters);
-        Block entry = cfg.getEntryBlock();
-        thenStores.put(entry, initialStore);
-        elseStores.put(entry, initialStore);
-        inputs.put(entry, new TransferInput<>(null, this, initialStore));
+        int entry = cfg.getEntryBlock().getId();
+        thenStores[entry] = initialStore;
+        elseStores[entry] = initialStore;
+        inputs[entry] = new TransferInput<>(null, this, initialStore);
     }
 
     /**
      * Add a basic block to the worklist. If {@code b} is already present, the method does nothing.
      */
     protected void addToWorklist(Block b) {
-        // TODO: use a more efficient way to check if b is already present
         if (!worklist.contains(b)) {
             worklist.add(b);
         }
@@ -469,9 +475,10 @@ public class Analysis<
                     // Update the then store
                     S newThenStore = (thenStore != null) ? thenStore.leastUpperBound(s) : s;
                     if (!newThenStore.equals(thenStore)) {
-                        thenStores.put(b, newThenStore);
+                        thenStores[b.getId()] = newThenStore;
                         if (elseStore != null) {
-                            inputs.put(b, new TransferInput<>(node, this, newThenStore, elseStore));
+                            inputs[b.getId()] =
+                                    new TransferInput<>(node, this, newThenStore, elseStore);
                             addBlockToWorklist = true;
                         }
                     }
@@ -482,9 +489,10 @@ public class Analysis<
                     // Update the else store
                     S newElseStore = (elseStore != null) ? elseStore.leastUpperBound(s) : s;
                     if (!newElseStore.equals(elseStore)) {
-                        elseStores.put(b, newElseStore);
+                        elseStores[b.getId()] = newElseStore;
                         if (thenStore != null) {
-                            inputs.put(b, new TransferInput<>(node, this, thenStore, newElseStore));
+                            inputs[b.getId()] =
+                                    new TransferInput<>(node, this, thenStore, newElseStore);
                             addBlockToWorklist = true;
                         }
                     }
@@ -495,9 +503,9 @@ public class Analysis<
                     // Currently there is only one regular store
                     S newStore = (thenStore != null) ? thenStore.leastUpperBound(s) : s;
                     if (!newStore.equals(thenStore)) {
-                        thenStores.put(b, newStore);
-                        elseStores.put(b, newStore);
-                        inputs.put(b, new TransferInput<>(node, this, newStore));
+                        thenStores[b.getId()] = newStore;
+                        elseStores[b.getId()] = newStore;
+                        inputs[b.getId()] = new TransferInput<>(node, this, newStore);
                         addBlockToWorklist = true;
                     }
                 } else {
@@ -505,18 +513,19 @@ public class Analysis<
 
                     S newThenStore = (thenStore != null) ? thenStore.leastUpperBound(s) : s;
                     if (!newThenStore.equals(thenStore)) {
-                        thenStores.put(b, newThenStore);
+                        thenStores[b.getId()] = newThenStore;
                         storeChanged = true;
                     }
 
                     S newElseStore = (elseStore != null) ? elseStore.leastUpperBound(s) : s;
                     if (!newElseStore.equals(elseStore)) {
-                        elseStores.put(b, newElseStore);
+                        elseStores[b.getId()] = newElseStore;
                         storeChanged = true;
                     }
 
                     if (storeChanged) {
-                        inputs.put(b, new TransferInput<>(node, this, newThenStore, newElseStore));
+                        inputs[b.getId()] =
+                                new TransferInput<>(node, this, newThenStore, newElseStore);
                         addBlockToWorklist = true;
                     }
                 }
@@ -533,28 +542,22 @@ public class Analysis<
      */
     protected static class Worklist {
 
-        /** Map all blocks in the CFG to their depth-first order. */
-        protected IdentityHashMap<Block, Integer> depthFirstOrder;
+        /** The blocks of the CFG, indexed by their ID. */
+        protected Block[] blocks;
 
-        /** Comparator to allow priority queue to order blocks by their depth-first order. */
-        public class DFOComparator implements Comparator<Block> {
-            @Override
-            public int compare(Block b1, Block b2) {
-                return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
-            }
-        }
-
-        /** The backing priority queue. */
-        protected PriorityQueue<Block> queue;
+        /**
+         * The IDs of the blocks in the worklist. Block IDs follow the depth-first order, so polling
+         * the lowest set bit yields the block that comes first in that order.
+         */
+        protected BitSet queue;
 
         public Worklist(ControlFlowGraph cfg) {
-            depthFirstOrder = new IdentityHashMap<>();
-            int count = 1;
-            for (Block b : cfg.getDepthFirstOrderedBlocks()) {
-                depthFirstOrder.put(b, count++);
+            blocks = new Block[cfg.getNumberOfBlocks()];
+            for (int id = 0; id < blocks.length; id++) {
+                blocks[id] = cfg.getBlock(id);
             }
 
-            queue = new PriorityQueue<Block>(11, new DFOComparator());
+            queue = new BitSet(blocks.length);
         }
 
         public boolean isEmpty() {
@@ -562,20 +565,31 @@ public class Analysis<
         }
 
         public boolean contains(Block block) {
-            return queue.contains(block);
+            return queue.get(block.getId());
         }
 
         public void add(Block block) {
-            queue.add(block);
+            queue.set(block.getId());
         }
 
         public Block poll() {
-            return queue.poll();
+            int next = queue.nextSetBit(0);
+            if (next < 0) {
+                return null;
+            }
+            queue.clear(next);
+            return blocks[next];
         }
 
         @Override
         public String toString() {
-            return "Worklist(" + queue + ")";
+            StringBuilder sb = new StringBuilder("Worklist([");
+            String separator = "";
+            for (int i = queue.nextSetBit(0); i >= 0; i = queue.nextSetBit(i + 1)) {
+                sb.append(separator).append(blocks[i]);
+                separator = ", ";
+            }
+            return sb.append("])").toString();
         }
     }
 
@@ -592,7 +606,10 @@ public class Analysis<
      *     b}.
      */
     protected /*@Nullable*/ TransferInput<A, S> getInputBefore(Block b) {
-        return inputs.get(b);
+        if (b == null || !cfg.containsBlock(b)) {
+            return null;
+        }
+        return inputs[b.getId()];
     }
 
     /** @return the store corresponding to the location right before the basic block {@code b}. */
@@ -609,11 +626,11 @@ public class Analysis<
     }
 
     /**
-     * Read the {@link Store} for a particular basic block from a map of stores (or {@code null} if
-     * none exists yet).
+     * Read the {@link Store} for a particular basic block from an array of stores indexed by block
+     * ID (or {@code null} if none exists yet).
      */
-    protected static <S> /*@Nullable*/ S readFromStore(Map<Block, S> stores, Block b) {
-        return stores.get(b);
+    protected static <S> /*@Nullable*/ S readFromStore(S[] stores, Block b) {
+        return stores[b.getId()];
     }
 
     /** Is the analysis currently running? */
@@ -642,9 +659,20 @@ public class Analysis<
                             || currentNode.getTransitiveOperands().contains(n)))) {
                 return null;
             }
-            return nodeValues.get(n);
+            return getNodeValue(n);
         }
-        return nodeValues.get(n);
+        return getNodeValue(n);
+    }
+
+    /**
+     * @return the value recorded for {@link Node} {@code n}, or {@code null} if {@code n} does not
+     *     belong to the current control flow graph or has no value yet.
+     */
+    private /*@Nullable*/ A getNodeValue(Node n) {
+        if (!cfg.containsNode(n)) {
+            return null;
+        }
+        return nodeValues[n.getId()];
     }
 
     /**
@@ -697,7 +725,19 @@ public class Analysis<
     public AnalysisResult<A, S> getResult() {
         assert !isRunning;
         IdentityHashMap<Tree, Node> treeLookup = cfg.getTreeLookup();
-        return new AnalysisResult<>(nodeValues, inputs, treeLookup, finalLocalValues);
+        IdentityHashMap<Node, A> nodeValueMap = new IdentityHashMap<>();
+        for (int id = 0; id < nodeValues.length; id++) {
+            if (nodeValues[id] != null) {
+                nodeValueMap.put(cfg.getNode(id), nodeValues[id]);
+            }
+        }
+        IdentityHashMap<Block, TransferInput<A, S>> inputMap = new IdentityHashMap<>();
+        for (int id = 0; id < inputs.length; id++) {
+            if (inputs[id] != null) {
+                inputMap.put(cfg.getBlock(id), inputs[id]);
+            }
+        }
+        return new AnalysisResult<>(nodeValueMap, inputMap, treeLookup, finalLocalValues);
     }
 
     /**
@@ -706,8 +746,8 @@ public class Analysis<
      */
     public /*@Nullable*/ S getRegularExitStore() {
         SpecialBlock regularExitBlock = cfg.getRegularExitBlock();
-        if (inputs.containsKey(regularExitBlock)) {
-            S regularExitStore = inputs.get(regularExitBlock).getRegularStore();
+        if (inputs[regularExitBlock.getId()] != null) {
+            S regularExitStore = inputs[regularExitBlock.getId()].getRegularStore();
             return regularExitStore;
         } else {
             return null;
@@ -715,7 +755,7 @@ public class Analysis<
     }
 
     public S getExceptionalExitStore() {
-        S exceptionalExitStore = inputs.get(cfg.getExceptionalExitBlock()).getRegularStore();
+        S exceptionalExitStore = inputs[cfg.getExceptionalExitBlock().getId()].getRegularStore();
         return exceptionalExitStore;
     }
 }
@@ -7,8 +7,9 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import com.sun.source.tree.Tree;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import javax.lang.model.element.Element;
 import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
@@ -37,6 +38,24 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
     /** The stores before every method call. */
     protected final IdentityHashMap<Block, TransferInput<A, S>> stores;
 
+    /**
+     * The stores before and after every node of recently replayed blocks, in least-recently-used
+     * order, or {@code null} if store caching is disabled. See {@link #enableStoreCache(int)}.
+     */
+    protected /*@Nullable*/ LinkedHashMap<Block, BlockStores<S>> storeCache;
+
+    /** The maximal number of stores held by {@link #storeCache}. */
+    protected int storeCacheLimit;
+
+    /** The number of stores currently held by {@link #storeCache}. */
+    protected int storeCacheSize;
+
+    /** The number of store queries answered from {@link #storeCache}. */
+    protected long storeCacheHits;
+
+    /** The number of times the transfer function was re-run over a block to answer a query. */
+    protected long storeCacheReplays;
+
     /** Initialize with a given node-value mapping. */
     public AnalysisResult(
             Map<Node, A> nodeValues,
@@ -59,18 +78,48 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
 
     /** Combine with another analysis result. */
     public void combine(AnalysisResult<A, S> other) {
-        for (Entry<Node, A> e : other.nodeValues.entrySet()) {
-            nodeValues.put(e.getKey(), e.getValue());
-        }
-        for (Entry<Tree, Node> e : other.treeLookup.entrySet()) {
-            treeLookup.put(e.getKey(), e.getValue());
-        }
-        for (Entry<Block, TransferInput<A, S>> e : other.stores.entrySet()) {
-            stores.put(e.getKey(), e.getValue());
+        nodeValues.putAll(other.nodeValues);
+        treeLookup.putAll(other.treeLookup);
+        stores.putAll(other.stores);
+        if (storeCache != null) {
+            for (Block b : other.stores.keySet()) {
+                evict(b);
+            }
         }
-        for (Entry<Element, A> e : other.finalLocalValues.entrySet()) {
-            finalLocalValues.put(e.getKey(), e.getValue());
+        finalLocalValues.putAll(other.finalLocalValues);
+    }
+
+    /**
+     * Enable caching of the stores before and after each node. Without the cache, every query for
+     * the store at a node re-runs the transfer function from the start of the node's block, so
+     * querying all nodes of a block takes time quadratic in its length. With the cache, the first
+     * query for a block records the stores at all of its nodes, and later queries are lookups.
+     *
+     * <p>Blocks are evicted in least-recently-used order once more than {@code limit} stores are
+     * cached. A cached store is copied when it is returned, so clients may modify it.
+     *
+     * @param limit the maximal number of stores to keep; must be positive
+     */
+    public void enableStoreCache(int limit) {
+        assert limit > 0 : "store cache limit must be positive: " + limit;
+        if (storeCache == null) {
+            storeCache = new LinkedHashMap<>(16, 0.75f, true);
         }
+        storeCacheLimit = limit;
+        shrinkStoreCache();
+    }
+
+    /** @return the number of store queries that were answered from the store cache */
+    public long getStoreCacheHits() {
+        return storeCacheHits;
+    }
+
+    /**
+     * @return the number of times the transfer function was re-run over a block to answer a store
+     *     query
+     */
+    public long getStoreCacheReplays() {
+        return storeCacheReplays;
     }
 
     /** @return the value of effectively final local variables */
@@ -137,7 +186,114 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         if (transferInput == null) {
             return null;
         }
-        return runAnalysisFor(node, before, transferInput);
+        if (storeCache == null) {
+            storeCacheReplays++;
+            return runAnalysisFor(node, before, transferInput);
+        }
+
+        BlockStores<S> blockStores = storeCache.get(block);
+        if (blockStores != null) {
+            storeCacheHits++;
+        } else {
+            if (transferInput.analysis.isRunning) {
+                // The block is being analyzed; its stores are not final yet.
+                return runAnalysisFor(node, before, transferInput);
+            }
+            storeCacheReplays++;
+            blockStores = computeBlockStores(block, transferInput);
+            storeCache.put(block, blockStores);
+            storeCacheSize += blockStores.size();
+            shrinkStoreCache();
+        }
+        S result = before ? blockStores.before.get(node) : blockStores.after.get(node);
+        return result == null ? null : result.copy();
+    }
+
+    /**
+     * Runs the analysis again within {@code block} and records the stores before and after each of
+     * its nodes. The stores are copied as they are recorded, because the transfer function may
+     * modify its input store, and the store in its result may be shared with other results.
+     */
+    protected BlockStores<S> computeBlockStores(Block block, TransferInput<A, S> transferInput) {
+        Analysis<A, S, ?> analysis = transferInput.analysis;
+        Node oldCurrentNode = analysis.currentNode;
+        BlockStores<S> result = new BlockStores<>();
+
+        analysis.isRunning = true;
+        try {
+            switch (block.getType()) {
+                case REGULAR_BLOCK:
+                    {
+                        RegularBlock rb = (RegularBlock) block;
+                        TransferInput<A, S> store = transferInput.copy();
+                        for (Node n : rb.getContents()) {
+                            analysis.currentNode = n;
+                            result.before.put(n, store.getRegularStore().copy());
+                            TransferResult<A, S> transferResult =
+                                    analysis.callTransferFunction(n, store);
+                            result.after.put(n, transferResult.getRegularStore().copy());
+                            store = new TransferInput<>(n, analysis, transferResult);
+                        }
+                        break;
+                    }
+
+                case EXCEPTION_BLOCK:
+                    {
+                        ExceptionBlock eb = (ExceptionBlock) block;
+                        Node n = eb.getNode();
+                        TransferInput<A, S> store = transferInput.copy();
+                        analysis.currentNode = n;
+                        result.before.put(n, store.getRegularStore().copy());
+                        TransferResult<A, S> transferResult =
+                                analysis.callTransferFunction(n, store);
+                        result.after.put(n, transferResult.getRegularStore().copy());
+                        break;
+                    }
+
+                default:
+                    // Only regular blocks and exceptional blocks can hold nodes.
+                    assert false;
+                    break;
+            }
+            return result;
+        } finally {
+            analysis.currentNode = oldCurrentNode;
+            analysis.isRunning = false;
+        }
+    }
+
+    /** Remove the cached stores of {@code block}, if any. */
+    private void evict(Block block) {
+        BlockStores<S> removed = storeCache.remove(block);
+        if (removed != null) {
+            storeCacheSize -= removed.size();
+        }
+    }
+
+    /**
+     * Evict least-recently-used blocks until at most {@link #storeCacheLimit} stores are cached.
+     * The most recently used block is always kept, even if it alone exceeds the limit.
+     */
+    private void shrinkStoreCache() {
+        Iterator<BlockStores<S>> it = storeCache.values().iterator();
+        while (storeCacheSize > storeCacheLimit && storeCache.size() > 1) {
+            storeCacheSize -= it.next().size();
+            it.remove();
+        }
+    }
+
+    /** The stores before and after every node of a single block. */
+    protected static class BlockStores<S extends Store<S>> {
+        /** The store immediately before each node. */
+        protected final IdentityHashMap<Node, S> before = new IdentityHashMap<>();
+
+        /** The store immediately after each node. */
+        protected final IdentityHashMap<Node, S> after = new IdentityHashMap<>();
+
+        /** @return the number of stores recorded for the block */
+        protected int size() {
+            return before.size() + after.size();
+        }
     }
 
     /**
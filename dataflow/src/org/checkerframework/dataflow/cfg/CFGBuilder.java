@@ -47,7 +47,9 @@ import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.Block.BlockType;
 import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlockImpl;
+import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlockImpl;
+import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.block.RegularBlockImpl;
 import org.checkerframework.dataflow.cfg.block.SingleSuccessorBlockImpl;
 import org.checkerframework.dataflow.cfg.block.SpecialBlock.SpecialBlockType;
@@ -755,9 +757,52 @@ public class CFGBuilder {
                 }
             }
 
+            assignIds(cfg);
             return cfg;
         }
 
+        /**
+         * Number the basic blocks and nodes of {@code cfg} densely, and record them in the tables
+         * of {@code cfg}. Blocks are numbered in reverse postorder, so that a worklist ordered by
+         * block ID visits non-loop predecessors ahead of their successors. The exit blocks are
+         * numbered last if they are not reachable.
+         */
+        protected static void assignIds(ControlFlowGraph cfg) {
+            List<Block> dfo = cfg.getDepthFirstOrderedBlocks();
+            // A block may occur more than once; its last occurrence determines its position.
+            Set<Block> seen = new HashSet<>();
+            List<Block> blocks = new ArrayList<>();
+            for (int i = dfo.size() - 1; i >= 0; i--) {
+                Block b = dfo.get(i);
+                if (seen.add(b)) {
+                    blocks.add(b);
+                }
+            }
+            Collections.reverse(blocks);
+            for (Block exit : Arrays.asList(cfg.regularExitBlock, cfg.exceptionalExitBlock)) {
+                if (seen.add(exit)) {
+                    blocks.add(exit);
+                }
+            }
+
+            List<Node> nodes = new ArrayList<>();
+            for (int id = 0; id < blocks.size(); id++) {
+                Block b = blocks.get(id);
+                ((BlockImpl) b).setId(id);
+                if (b.getType() == BlockType.REGULAR_BLOCK) {
+                    nodes.addAll(((RegularBlock) b).getContents());
+                } else if (b.getType() == BlockType.EXCEPTION_BLOCK) {
+                    nodes.add(((ExceptionBlock) b).getNode());
+                }
+            }
+            for (int id = 0; id < nodes.size(); id++) {
+                nodes.get(id).setId(id);
+            }
+
+            cfg.blocks = blocks.toArray(new Block[blocks.size()]);
+            cfg.nodes = nodes.toArray(new Node[nodes.size()]);
+        }
+
         /**
          * Compute the set of empty regular basic blocks {@code empty}, starting at {@code start}
          * and going both forward and backwards. Furthermore, compute the predecessors of these
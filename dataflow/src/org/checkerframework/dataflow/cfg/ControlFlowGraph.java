@@ -7,6 +7,8 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
@@ -61,6 +63,18 @@ public class ControlFlowGraph {
      */
     protected final List<ReturnNode> returnNodes;
 
+    /**
+     * The basic blocks of this control flow graph, indexed by their {@link Block#getId() ID}.
+     * Filled in by the {@link CFGBuilder} once the graph is complete.
+     */
+    protected Block[] blocks = new Block[0];
+
+    /**
+     * The nodes of this control flow graph, indexed by their {@link Node#getId() ID}. Filled in by
+     * the {@link CFGBuilder} once the graph is complete.
+     */
+    protected Node[] nodes = new Node[0];
+
     public ControlFlowGraph(
             SpecialBlock entryBlock,
             SpecialBlockImpl regularExitBlock,
@@ -88,6 +102,38 @@ public class ControlFlowGraph {
         }
     }
 
+    /** @return the number of basic blocks in this control flow graph */
+    public int getNumberOfBlocks() {
+        return blocks.length;
+    }
+
+    /** @return the basic block with ID {@code id} */
+    public Block getBlock(int id) {
+        return blocks[id];
+    }
+
+    /** @return true if {@code b} is a basic block of this control flow graph */
+    public boolean containsBlock(Block b) {
+        int id = b.getId();
+        return id >= 0 && id < blocks.length && blocks[id] == b;
+    }
+
+    /** @return the number of nodes in the basic blocks of this control flow graph */
+    public int getNumberOfNodes() {
+        return nodes.length;
+    }
+
+    /** @return the node with ID {@code id} */
+    public Node getNode(int id) {
+        return nodes[id];
+    }
+
+    /** @return true if {@code n} is a node in a basic block of this control flow graph */
+    public boolean containsNode(Node n) {
+        int id = n.getId();
+        return id >= 0 && id < nodes.length && nodes[id] == n;
+    }
+
     /** @return the entry block of the control flow graph. */
     public SpecialBlock getEntryBlock() {
         return entryBlock;
@@ -162,9 +208,9 @@ public class ControlFlowGraph {
      *     <p>Blocks may appear more than once in the sequence.
      */
     public List<Block> getDepthFirstOrderedBlocks() {
-        List<Block> dfsOrderResult = new LinkedList<>();
+        List<Block> dfsOrderResult = new ArrayList<>();
         Set<Block> visited = new HashSet<>();
-        Deque<Block> worklist = new LinkedList<>();
+        Deque<Block> worklist = new ArrayDeque<>();
         worklist.add(entryBlock);
         while (!worklist.isEmpty()) {
             Block cur = worklist.getLast();
@@ -173,9 +219,11 @@ public class ControlFlowGraph {
                 worklist.removeLast();
             } else {
                 visited.add(cur);
-                Deque<Block> successors = getSuccessors(cur);
-                successors.removeAll(visited);
-                worklist.addAll(successors);
+                for (Block succ : getSuccessors(cur)) {
+                    if (!visited.contains(succ)) {
+                        worklist.add(succ);
+                    }
+                }
             }
         }
 
@@ -186,10 +234,10 @@ public class ControlFlowGraph {
     /**
      * Get a list of all successor Blocks for cur
      *
-     * @return a Deque of successor Blocks
+     * @return a List of successor Blocks
      */
-    private Deque<Block> getSuccessors(Block cur) {
-        Deque<Block> succs = new LinkedList<>();
+    private List<Block> getSuccessors(Block cur) {
+        List<Block> succs = new ArrayList<>();
         if (cur.getType() == BlockType.CONDITIONAL_BLOCK) {
             ConditionalBlock ccur = ((ConditionalBlock) cur);
             succs.add(ccur.getThenSuccessor());
@@ -26,6 +26,10 @@ public interface Block {
     /** @return the type of this basic block */
     BlockType getType();
 
-    /** @return the unique identifier of this block */
-    long getId();
+    /**
+     * @return the identifier of this block, which is unique within its control flow graph. The
+     *     identifiers of the blocks of a graph are dense, starting from 0, and ordered by reverse
+     *     postorder.
+     */
+    int getId();
 }
@@ -11,11 +11,11 @@ import java.util.Set;
  */
 public abstract class BlockImpl implements Block {
 
-    /** A unique ID for this node. */
-    protected long id = BlockImpl.uniqueID();
-
-    /** The last ID that has already been used. */
-    protected static long lastId = 0;
+    /**
+     * The ID of this block, unique within its control flow graph. Assigned by the {@link
+     * org.checkerframework.dataflow.cfg.CFGBuilder} once the graph is complete.
+     */
+    protected int id = -1;
 
     /** The type of this basic block. */
     protected BlockType type;
@@ -23,20 +23,20 @@ public abstract class BlockImpl implements Block {
     /** The set of predecessors. */
     protected Set<BlockImpl> predecessors;
 
-    /** @return a fresh identifier */
-    private static long uniqueID() {
-        return lastId++;
-    }
-
     public BlockImpl() {
         predecessors = new HashSet<>();
     }
 
     @Override
-    public long getId() {
+    public int getId() {
         return id;
     }
 
+    /** Set the ID of this block. */
+    public void setId(int id) {
+        this.id = id;
+    }
+
     @Override
     public BlockType getType() {
         return type;
@@ -35,6 +35,12 @@ public abstract class Node {
     /** The basic block this node belongs to (see invariant about this field above). */
     protected /*@Nullable*/ Block block;
 
+    /**
+     * The ID of this node, unique within its control flow graph, or -1 if this node does not
+     * belong to a basic block.
+     */
+    protected int id = -1;
+
     /** Is this node an l-value? */
     protected boolean lvalue = false;
 
@@ -71,6 +77,20 @@ public abstract class Node {
         block = b;
     }
 
+    /**
+     * @return the identifier of this node, which is unique within its control flow graph, or -1 if
+     *     this node does not belong to a basic block. The identifiers of the nodes of a graph are
+     *     dense, starting from 0.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /** Set the identifier of this node. */
+    public void setId(int id) {
+        this.id = id;
+    }
+
     /**
      * Returns the {@link Tree} in the abstract syntax tree, or {@code null} if no corresponding
      * tree exists. For instance, this is the case for an {@link ImplicitThisLiteralNode}.
@@ -0,0 +1,280 @@
+package org.checkerframework.dataflow.util;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link HashMap}-backed map whose copy constructor is O(1): the copy shares the backing map of
+ * the original, and whichever of the two maps is modified first makes a private copy of the
+ * backing map before performing the modification.
+ *
+ * <p>This is useful for dataflow stores, which are copied for every basic block but are usually
+ * modified in only a few of their maps. Two maps that share their backing map are guaranteed to
+ * be equal, which {@link #sharesStorageWith} exposes so that clients can skip work.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class CopyOnWriteHashMap<K, V> extends AbstractMap<K, V> {
+
+    /** The backing map; must not be modified unless {@link #owned} is true. */
+    private HashMap<K, V> map;
+
+    /** Is {@link #map} exclusively owned by this object (i.e., not shared with any copy)? */
+    private boolean owned;
+
+    /** Creates an empty map. */
+    public CopyOnWriteHashMap() {
+        this.map = new HashMap<>();
+        this.owned = true;
+    }
+
+    /** Creates a map containing the mappings of {@code m}, which is copied eagerly. */
+    public CopyOnWriteHashMap(Map<? extends K, ? extends V> m) {
+        this.map = new HashMap<>(m);
+        this.owned = true;
+    }
+
+    /**
+     * Creates a map containing the mappings of {@code other}. This is an O(1) operation: the
+     * backing map is shared until either map is modified.
+     */
+    public CopyOnWriteHashMap(CopyOnWriteHashMap<K, V> other) {
+        this.map = other.map;
+        this.owned = false;
+        other.owned = false;
+    }
+
+    /**
+     * Returns a copy of {@code m}. The copy is O(1) if {@code m} is a {@link CopyOnWriteHashMap},
+     * and O(n) otherwise.
+     */
+    public static <K, V> CopyOnWriteHashMap<K, V> copyOf(Map<K, V> m) {
+        if (m instanceof CopyOnWriteHashMap) {
+            return new CopyOnWriteHashMap<K, V>((CopyOnWriteHashMap<K, V>) m);
+        }
+        return new CopyOnWriteHashMap<K, V>(m);
+    }
+
+    /**
+     * Returns true if {@code a} and {@code b} are both {@link CopyOnWriteHashMap}s that currently
+     * share their backing map, in which case they are guaranteed to be equal. A result of false
+     * carries no information.
+     */
+    public static boolean sharesStorage(Map<?, ?> a, Map<?, ?> b) {
+        return a instanceof CopyOnWriteHashMap
+                && b instanceof CopyOnWriteHashMap
+                && ((CopyOnWriteHashMap<?, ?>) a).sharesStorageWith((CopyOnWriteHashMap<?, ?>) b);
+    }
+
+    /**
+     * Returns true if this map and {@code other} currently share their backing map, in which case
+     * they are guaranteed to be equal. A result of false carries no information.
+     */
+    public boolean sharesStorageWith(CopyOnWriteHashMap<?, ?> other) {
+        return this.map == other.map;
+    }
+
+    /** Makes sure that {@link #map} may be modified. */
+    private void ensureOwned() {
+        if (!owned) {
+            map = new HashMap<>(map);
+            owned = true;
+        }
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return map.containsValue(value);
+    }
+
+    @Override
+    public /*@Nullable*/ V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        ensureOwned();
+        return map.put(key, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If this map is empty and {@code m} is a {@link CopyOnWriteHashMap}, this map shares the
+     * backing map of {@code m} instead of copying it.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m.isEmpty()) {
+            return;
+        }
+        if (map.isEmpty() && m instanceof CopyOnWriteHashMap) {
+            CopyOnWriteHashMap<? extends K, ? extends V> other =
+                    (CopyOnWriteHashMap<? extends K, ? extends V>) m;
+            @SuppressWarnings("unchecked") // the shared map is copied before it is modified
+            HashMap<K, V> shared = (HashMap<K, V>) other.map;
+            map = shared;
+            owned = false;
+            other.owned = false;
+            return;
+        }
+        ensureOwned();
+        map.putAll(m);
+    }
+
+    @Override
+    public /*@Nullable*/ V remove(Object key) {
+        if (!map.containsKey(key)) {
+            return null;
+        }
+        ensureOwned();
+        return map.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        if (owned) {
+            map.clear();
+        } else if (!map.isEmpty()) {
+            // No need to copy the contents that are about to be discarded.
+            map = new HashMap<>();
+            owned = true;
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof CopyOnWriteHashMap
+                && sharesStorageWith((CopyOnWriteHashMap<?, ?>) o)) {
+            return true;
+        }
+        return map.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return map.hashCode();
+    }
+
+    /**
+     * A view of the entries of the enclosing map. Modifications through the view (or its iterator
+     * or entries) are written through to the enclosing map, copying the backing map first if it is
+     * shared.
+     */
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.entrySet().contains(o);
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public void clear() {
+            CopyOnWriteHashMap.this.clear();
+        }
+    }
+
+    /**
+     * An iterator over the entries of the enclosing map. It iterates over the backing map as it was
+     * when the iterator was created; if the backing map is replaced by a private copy because of a
+     * modification through the iterator, later modifications are applied to the copy by key.
+     */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        /** The backing map being iterated over. */
+        private final HashMap<K, V> iterated = map;
+
+        private final Iterator<Entry<K, V>> it = iterated.entrySet().iterator();
+
+        private /*@Nullable*/ Entry<K, V> last = null;
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            last = it.next();
+            return new WriteThroughEntry(last, iterated);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            if (owned && map == iterated) {
+                it.remove();
+            } else {
+                ensureOwned();
+                map.remove(last.getKey());
+            }
+            last = null;
+        }
+    }
+
+    /** An entry whose {@link #setValue} writes through to the enclosing map. */
+    private class WriteThroughEntry extends SimpleEntry<K, V> {
+        private static final long serialVersionUID = 4151298546234861457L;
+
+        /** The entry of the backing map this entry was created from. */
+        private final transient Entry<K, V> delegate;
+
+        /** The backing map {@link #delegate} belongs to. */
+        private final transient HashMap<K, V> origin;
+
+        WriteThroughEntry(Entry<K, V> delegate, HashMap<K, V> origin) {
+            super(delegate);
+            this.delegate = delegate;
+            this.origin = origin;
+        }
+
+        @Override
+        public V setValue(V value) {
+            super.setValue(value);
+            if (owned && map == origin) {
+                return delegate.setValue(value);
+            }
+            ensureOwned();
+            return map.put(getKey(), value);
+        }
+    }
+}
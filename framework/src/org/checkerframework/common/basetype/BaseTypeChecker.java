@@ -412,7 +412,18 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
     // AbstractTypeProcessor delegation
     @Override
     public void typeProcess(TypeElement element, TreePath tree) {
+        if (replayCachedResults(element, tree)) {
+            return;
+        }
+        try {
+            typeProcessSubcheckers(element, tree);
+        } finally {
+            storeCachedResults();
+        }
+    }
 
+    /** Run the subcheckers and then this checker on a class. */
+    private void typeProcessSubcheckers(TypeElement element, TreePath tree) {
         // If Java has issued errors, don't run any checkers on this compilation unit.
         // If a sub checker issued errors, run the next checker on this compilation unit.
 
@@ -425,6 +436,10 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
 
         // To prevent any checkers from running if a Java error was issued for this compilation unit,
         // errsOnLastExit should not include any Java errors.
+        // getSubcheckers() returns the subcheckers in dependency order: each checker comes
+        // after the checkers it depends on. They cannot run concurrently, even if they are
+        // independent: javac's Log, symbol completion and type utilities are not thread-safe,
+        // and a checker's type factory queries the type factories of its subcheckers.
         Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
         Log log = Log.instance(context);
         // Start with this.errsOnLastExit which will account for errors seen by
@@ -495,6 +510,23 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         }
     }
 
+    @Override
+    protected void printStats() {
+        super.printStats();
+        getTypeFactory().printCacheStatistics();
+        for (BaseTypeChecker checker : getSubcheckers()) {
+            checker.getTypeFactory().printCacheStatistics();
+        }
+    }
+
+    @Override
+    protected void collectPhaseProfiles(List<String> lines) {
+        for (BaseTypeChecker checker : getSubcheckers()) {
+            checker.collectPhaseProfiles(lines);
+        }
+        super.collectPhaseProfiles(lines);
+    }
+
     @Override
     protected boolean shouldAddShutdownHook() {
         if (super.shouldAddShutdownHook() || getTypeFactory().getCFGVisualizer() != null) {
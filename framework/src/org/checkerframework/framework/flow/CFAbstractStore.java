@@ -4,7 +4,7 @@ package org.checkerframework.framework.flow;
 import org.checkerframework.checker.nullness.qual.Nullable;
 */
 
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,6 +30,7 @@ import org.checkerframework.dataflow.cfg.node.MethodInvocationNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ThisLiteralNode;
 import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.checkerframework.dataflow.util.CopyOnWriteHashMap;
 import org.checkerframework.dataflow.util.PurityUtils;
 import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
@@ -49,6 +50,10 @@ import org.checkerframework.javacutil.Pair;
  * BaseTypeVisitor#getFlowExpressionContextFromNode(Node) needs to be updated. Failing to do so may
  * result in silent failures that are time consuming to debug.
  *
+ * <p>The maps of a store are {@link CopyOnWriteHashMap}s, so copying a store is cheap and a copy
+ * shares the maps of the original until either store modifies them. Methods that remove
+ * information should therefore only write to a map if something actually changes.
+ *
  * @author Charlie Garrett
  * @author Stefan Heule
  */
@@ -100,24 +105,27 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
 
     public CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
         this.analysis = analysis;
-        localVariableValues = new HashMap<>();
+        localVariableValues = new CopyOnWriteHashMap<>();
         thisValue = null;
-        fieldValues = new HashMap<>();
-        methodValues = new HashMap<>();
-        arrayValues = new HashMap<>();
-        classValues = new HashMap<>();
+        fieldValues = new CopyOnWriteHashMap<>();
+        methodValues = new CopyOnWriteHashMap<>();
+        arrayValues = new CopyOnWriteHashMap<>();
+        classValues = new CopyOnWriteHashMap<>();
         this.sequentialSemantics = sequentialSemantics;
     }
 
-    /** Copy constructor. */
+    /**
+     * Copy constructor. The maps of {@code other} are shared with the new store until either store
+     * modifies them, so this takes constant time.
+     */
     protected CFAbstractStore(CFAbstractStore<V, S> other) {
         this.analysis = other.analysis;
-        localVariableValues = new HashMap<>(other.localVariableValues);
+        localVariableValues = CopyOnWriteHashMap.copyOf(other.localVariableValues);
         thisValue = other.thisValue;
-        fieldValues = new HashMap<>(other.fieldValues);
-        methodValues = new HashMap<>(other.methodValues);
-        arrayValues = new HashMap<>(other.arrayValues);
-        classValues = new HashMap<>(other.classValues);
+        fieldValues = CopyOnWriteHashMap.copyOf(other.fieldValues);
+        methodValues = CopyOnWriteHashMap.copyOf(other.methodValues);
+        arrayValues = CopyOnWriteHashMap.copyOf(other.arrayValues);
+        classValues = CopyOnWriteHashMap.copyOf(other.classValues);
         sequentialSemantics = other.sequentialSemantics;
     }
 
@@ -188,8 +196,10 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         if (!(analysis.checker.hasOption("assumeSideEffectFree")
                 || isSideEffectFree(atypeFactory, method))) {
             // update field values
-            Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-            for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
+            Iterator<Entry<FlowExpressions.FieldAccess, V>> fieldIter =
+                    fieldValues.entrySet().iterator();
+            while (fieldIter.hasNext()) {
+                Entry<FlowExpressions.FieldAccess, V> e = fieldIter.next();
                 FlowExpressions.FieldAccess fieldAccess = e.getKey();
                 V otherVal = e.getValue();
 
@@ -216,19 +226,20 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                 if (newOtherVal != null) {
                     // keep information for all hierarchies where we had a
                     // monotone annotation.
-                    newFieldValues.put(fieldAccess, newOtherVal);
+                    if (!newOtherVal.equals(otherVal)) {
+                        e.setValue(newOtherVal);
+                    }
                     continue;
                 }
 
                 // case 2:
                 if (!fieldAccess.isUnmodifiableByOtherCode()) {
-                    continue; // remove information completely
+                    fieldIter.remove(); // remove information completely
+                    continue;
                 }
 
                 // keep information
-                newFieldValues.put(fieldAccess, otherVal);
             }
-            fieldValues = newFieldValues;
 
             // update method values
             methodValues.clear();
@@ -589,13 +600,16 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.FieldAccess fieldAccess, /*@Nullable*/ V val) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
+        Iterator<Entry<FlowExpressions.FieldAccess, V>> fieldIter =
+                fieldValues.entrySet().iterator();
+        while (fieldIter.hasNext()) {
+            Entry<FlowExpressions.FieldAccess, V> e = fieldIter.next();
             FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
             V otherVal = e.getValue();
             // case 2:
             if (otherFieldAccess.getReceiver().containsModifiableAliasOf(this, fieldAccess)) {
-                continue; // remove information completely
+                fieldIter.remove(); // remove information completely
+                continue;
             }
             // case 1:
             if (fieldAccess.getField().equals(otherFieldAccess.getField())) {
@@ -603,33 +617,28 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                     if (!otherFieldAccess.isFinal()) {
                         if (val != null) {
                             V newVal = val.leastUpperBound(otherVal);
-                            newFieldValues.put(otherFieldAccess, newVal);
+                            e.setValue(newVal);
                         } else {
-                            // remove information completely
+                            fieldIter.remove(); // remove information completely
                         }
                         continue;
                     }
                 }
             }
             // information is save to be carried over
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
+        Iterator<FlowExpressions.ArrayAccess> arrayIter = arrayValues.keySet().iterator();
+        while (arrayIter.hasNext()) {
+            FlowExpressions.ArrayAccess otherArrayAccess = arrayIter.next();
             if (otherArrayAccess.containsModifiableAliasOf(this, fieldAccess)) {
                 // remove information completely
-                continue;
+                arrayIter.remove();
             }
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -652,42 +661,37 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.ArrayAccess arrayAccess, /*@Nullable*/ V val) {
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
+        Iterator<FlowExpressions.ArrayAccess> arrayIter = arrayValues.keySet().iterator();
+        while (arrayIter.hasNext()) {
+            FlowExpressions.ArrayAccess otherArrayAccess = arrayIter.next();
             // case 1:
             if (otherArrayAccess.containsModifiableAliasOf(this, arrayAccess)) {
-                continue; // remove information completely
+                arrayIter.remove(); // remove information completely
+                continue;
             }
             if (canAlias(arrayAccess.getReceiver(), otherArrayAccess.getReceiver())) {
                 // TODO: one could be less strict here, and only raise the
                 // abstract value
                 // for all array expressions with potentially aliasing receivers
-                continue; // remove information completely
+                arrayIter.remove(); // remove information completely
+                continue;
             }
             // information is save to be carried over
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
 
         // case 2:
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
-            V otherVal = e.getValue();
-            Receiver receiver = otherFieldAccess.getReceiver();
+        Iterator<FlowExpressions.FieldAccess> fieldIter = fieldValues.keySet().iterator();
+        while (fieldIter.hasNext()) {
+            Receiver receiver = fieldIter.next().getReceiver();
             if (receiver.containsModifiableAliasOf(this, arrayAccess)
                     && receiver.containsOfClass(ArrayAccess.class)) {
                 // remove information completely
-                continue;
+                fieldIter.remove();
             }
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -704,39 +708,33 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * </ol>
      */
     protected void removeConflicting(LocalVariable var) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
+        Iterator<FlowExpressions.FieldAccess> fieldIter = fieldValues.keySet().iterator();
+        while (fieldIter.hasNext()) {
+            FlowExpressions.FieldAccess otherFieldAccess = fieldIter.next();
             // case 1:
             if (otherFieldAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                fieldIter.remove();
             }
-            newFieldValues.put(otherFieldAccess, e.getValue());
         }
-        fieldValues = newFieldValues;
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
+        Iterator<FlowExpressions.ArrayAccess> arrayIter = arrayValues.keySet().iterator();
+        while (arrayIter.hasNext()) {
+            FlowExpressions.ArrayAccess otherArrayAccess = arrayIter.next();
             // case 2:
             if (otherArrayAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+                arrayIter.remove();
             }
-            newArrayValues.put(otherArrayAccess, e.getValue());
         }
-        arrayValues = newArrayValues;
 
-        Map<FlowExpressions.MethodCall, V> newMethodValues = new HashMap<>();
-        for (Entry<FlowExpressions.MethodCall, V> e : methodValues.entrySet()) {
-            FlowExpressions.MethodCall otherMethodAccess = e.getKey();
+        Iterator<FlowExpressions.MethodCall> methodIter = methodValues.keySet().iterator();
+        while (methodIter.hasNext()) {
+            FlowExpressions.MethodCall otherMethodAccess = methodIter.next();
             // case 3:
             if (otherMethodAccess.containsSyntacticEqualReceiver(var)
                     || otherMethodAccess.containsSyntacticEqualParameter(var)) {
-                continue;
+                methodIter.remove();
             }
-            newMethodValues.put(otherMethodAccess, e.getValue());
         }
-        methodValues = newMethodValues;
     }
 
     /**
@@ -790,20 +788,10 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
     public S leastUpperBound(S other) {
         S newStore = analysis.createEmptyStore(sequentialSemantics);
 
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            // local variables that are only part of one store, but not the
-            // other are discarded, as one of store implicitly contains 'top'
-            // for that variable.
-            FlowExpressions.LocalVariable localVar = e.getKey();
-            if (localVariableValues.containsKey(localVar)) {
-                V otherVal = e.getValue();
-                V thisVal = localVariableValues.get(localVar);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
-                if (mergedVal != null) {
-                    newStore.localVariableValues.put(localVar, mergedVal);
-                }
-            }
-        }
+        // Information about expressions that are only part of one store, but not the other, is
+        // discarded, as one store implicitly contains 'top' for that expression.
+        leastUpperBound(
+                localVariableValues, other.localVariableValues, newStore.localVariableValues);
 
         // information about the current object
         {
@@ -815,60 +803,36 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
             }
         }
 
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            // information about fields that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that field.
-            FlowExpressions.FieldAccess el = e.getKey();
-            if (fieldValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = fieldValues.get(el);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
-                if (mergedVal != null) {
-                    newStore.fieldValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            // information about arrays that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that array access.
-            FlowExpressions.ArrayAccess el = e.getKey();
-            if (arrayValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = arrayValues.get(el);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
-                if (mergedVal != null) {
-                    newStore.arrayValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            // information about methods that are only part of one store, but
-            // not the other are discarded, as one store implicitly contains
-            // 'top' for that field.
-            FlowExpressions.MethodCall el = e.getKey();
-            if (methodValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = methodValues.get(el);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
-                if (mergedVal != null) {
-                    newStore.methodValues.put(el, mergedVal);
-                }
-            }
+        leastUpperBound(fieldValues, other.fieldValues, newStore.fieldValues);
+        leastUpperBound(arrayValues, other.arrayValues, newStore.arrayValues);
+        leastUpperBound(methodValues, other.methodValues, newStore.methodValues);
+        leastUpperBound(classValues, other.classValues, newStore.classValues);
+        return newStore;
+    }
+
+    /**
+     * Adds to the empty map {@code result} the least upper bound of the values of every key that
+     * is in both {@code mine} and {@code other}. If the two maps share their storage, {@code
+     * mine} is added without computing any least upper bounds, which {@link
+     * CopyOnWriteHashMap#putAll} does in constant time.
+     */
+    private static <K, V extends CFAbstractValue<V>> void leastUpperBound(
+            Map<K, V> mine, Map<K, V> other, Map<K, V> result) {
+        if (CopyOnWriteHashMap.sharesStorage(mine, other)) {
+            // The least upper bound of a value with itself is that value.
+            result.putAll(mine);
+            return;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName el = e.getKey();
-            if (classValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = classValues.get(el);
-                V mergedVal = thisVal.leastUpperBound(otherVal);
+        for (Entry<K, V> e : other.entrySet()) {
+            K key = e.getKey();
+            V thisVal = mine.get(key);
+            if (thisVal != null) {
+                V mergedVal = thisVal.leastUpperBound(e.getValue());
                 if (mergedVal != null) {
-                    newStore.classValues.put(el, mergedVal);
+                    result.put(key, mergedVal);
                 }
             }
         }
-        return newStore;
     }
 
     /**
@@ -878,34 +842,24 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * equals predicate.
      */
     protected boolean supersetOf(CFAbstractStore<V, S> other) {
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            FlowExpressions.LocalVariable key = e.getKey();
-            if (!localVariableValues.containsKey(key)
-                    || !localVariableValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess key = e.getKey();
-            if (!fieldValues.containsKey(key) || !fieldValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess key = e.getKey();
-            if (!arrayValues.containsKey(key) || !arrayValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            FlowExpressions.MethodCall key = e.getKey();
-            if (!methodValues.containsKey(key) || !methodValues.get(key).equals(e.getValue())) {
-                return false;
-            }
+        return supersetOf(localVariableValues, other.localVariableValues)
+                && supersetOf(fieldValues, other.fieldValues)
+                && supersetOf(arrayValues, other.arrayValues)
+                && supersetOf(methodValues, other.methodValues)
+                && supersetOf(classValues, other.classValues);
+    }
+
+    /**
+     * Returns true iff {@code mine} contains all entries of {@code other}, using Java equality for
+     * keys and values. Maps that share their storage are not compared entry by entry.
+     */
+    private static <K, V> boolean supersetOf(Map<K, V> mine, Map<K, V> other) {
+        if (CopyOnWriteHashMap.sharesStorage(mine, other)) {
+            return true;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName key = e.getKey();
-            if (!classValues.containsKey(key) || !classValues.get(key).equals(e.getValue())) {
+        for (Entry<K, V> e : other.entrySet()) {
+            V thisVal = mine.get(e.getKey());
+            if (thisVal == null || !thisVal.equals(e.getValue())) {
                 return false;
             }
         }
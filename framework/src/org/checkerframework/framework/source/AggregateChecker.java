@@ -97,6 +97,17 @@ public abstract class AggregateChecker extends SourceChecker {
     // AbstractTypeProcessor delegation
     @Override
     public final void typeProcess(TypeElement element, TreePath tree) {
+        if (replayCachedResults(element, tree)) {
+            return;
+        }
+        try {
+            typeProcessSubcheckers(element, tree);
+        } finally {
+            storeCachedResults();
+        }
+    }
+
+    private void typeProcessSubcheckers(TypeElement element, TreePath tree) {
         Context context = ((JavacProcessingEnvironment) processingEnv).getContext();
         Log log = Log.instance(context);
         if (log.nerrors > this.errsOnLastExit) {
@@ -109,6 +120,7 @@ public abstract class AggregateChecker extends SourceChecker {
         if (!allCheckersInited) {
             // If there was an initialization problem, an
             // error was already output. Just quit.
+            invalidateCachedResults();
             return;
         }
         for (SourceChecker checker : checkers) {
@@ -0,0 +1,790 @@
+package org.checkerframework.framework.source;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symbol.ClassSymbol;
+import com.sun.tools.javac.code.Symbol.PackageSymbol;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCNewClass;
+import com.sun.tools.javac.tree.TreeInfo;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.IntersectionType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.type.UnionType;
+import javax.lang.model.type.WildcardType;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.framework.stub.StubResource;
+import org.checkerframework.framework.stub.StubUtil;
+
+/**
+ * A persistent cache of the diagnostics that a checker issues for each top-level class, used with
+ * the "resultsCache" option. The value of the option is the directory of the cache.
+ *
+ * <p>For each class, the cache stores a fingerprint of everything the result of checking it
+ * depends on, together with the diagnostics that the checker and its subcheckers issued. If the
+ * fingerprint of a class is unchanged in a later compilation, the class is not checked again;
+ * instead, its diagnostics are replayed. The fingerprint consists of:
+ *
+ * <ul>
+ *   <li>the checker, its options, the checker's code and the stub files that it reads besides
+ *       those in its code,
+ *   <li>the source of the compilation unit of the class,
+ *   <li>the annotations of the package of the class and the source of its package-info file, and
+ *   <li>the signatures of the classes that the class names, that occur in the types of its
+ *       expressions or in the signatures of the members it uses, and of their supertypes. A
+ *       signature consists of the declarations and declaration and type annotations of all
+ *       members, and of the annotations and package-info source of the package of the class.
+ * </ul>
+ *
+ * <p>The results of a class are not stored if processing it did not complete normally or if a
+ * diagnostic cannot be replayed faithfully, e.g. because it refers to another compilation unit.
+ * Only diagnostics reported through {@link SourceChecker#message} are recorded, not other output.
+ * Checkers that accumulate state across classes should not be used with this cache.
+ *
+ * <p>Only the outermost checker has a cache; a subchecker records its diagnostics in the cache of
+ * its outermost checker. The methods {@link #begin} and {@link #end} may be nested, so that each
+ * of the checkers that process a class may call them.
+ */
+final class ResultsCache {
+
+    /** The first bytes of a cache file: "CFRC". */
+    private static final int MAGIC = 0x43465243;
+
+    /** The version of the file format. */
+    private static final int VERSION = 1;
+
+    /** The suffix of the cache files. */
+    private static final String SUFFIX = ".results";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** Position kinds of a recorded diagnostic. */
+    private static final byte NO_POSITION = 0;
+
+    private static final byte TREE_POSITION = 1;
+    private static final byte ELEMENT_POSITION = 2;
+
+    /** The outermost checker. */
+    private final SourceChecker checker;
+
+    /** The directory of the cache files of {@link #checker}. */
+    private final File directory;
+
+    /** The digest of the checker, its options, its code and the stub files. */
+    private final String environmentDigest;
+
+    /** The signatures of classes, computed at most once per compilation. */
+    private final Map<TypeElement, String> signatures = new HashMap<>();
+
+    /** How deeply calls of {@link #begin} are nested. */
+    private int depth = 0;
+
+    /** The compilation unit of the class being processed, if {@link #depth} is positive. */
+    private CompilationUnitTree root;
+
+    /** The cache file of the class being processed. */
+    private File file;
+
+    /** The fingerprint of the class being processed, or null if its results cannot be cached. */
+    private /*@Nullable*/ String fingerprint;
+
+    /** The diagnostics issued for the class being processed. */
+    private final List<RecordedDiagnostic> recorded = new ArrayList<>();
+
+    /**
+     * Creates the cache of {@code checker}.
+     *
+     * @param checker the outermost checker
+     * @param directory the directory given by the "resultsCache" option
+     */
+    ResultsCache(SourceChecker checker, String directory) {
+        this.checker = checker;
+        this.directory = new File(directory, checker.getClass().getName());
+        this.environmentDigest = computeEnvironmentDigest();
+    }
+
+    /**
+     * Start processing a class. If the cached results of the class are valid, replay them.
+     *
+     * @param element the class
+     * @param path the path to the class
+     * @param mayReplay false if the results of the class must be neither replayed nor stored,
+     *     e.g. because its compilation unit contains Java errors
+     * @return true if the results were replayed and the class must not be processed; {@link #end}
+     *     must be called iff false is returned
+     */
+    boolean begin(TypeElement element, TreePath path, boolean mayReplay) {
+        if (depth++ > 0) {
+            return false;
+        }
+        root = path.getCompilationUnit();
+        file = new File(directory, element.getQualifiedName() + SUFFIX);
+        recorded.clear();
+        fingerprint = mayReplay ? computeFingerprint(element, path) : null;
+        if (fingerprint == null) {
+            return false;
+        }
+        List<RecordedDiagnostic> cached = read();
+        if (cached == null || !replay(cached)) {
+            return false;
+        }
+        depth--;
+        return true;
+    }
+
+    /** Finish processing the class that was passed to {@link #begin}, and store its results. */
+    void end() {
+        if (--depth > 0 || fingerprint == null) {
+            return;
+        }
+        try {
+            write();
+        } catch (IOException e) {
+            checker.message(
+                    Diagnostic.Kind.WARNING,
+                    "Could not write the results cache file %s: %s",
+                    file,
+                    e.getMessage());
+        }
+    }
+
+    /** Do not store the results of the class being processed. */
+    void invalidate() {
+        fingerprint = null;
+    }
+
+    /**
+     * Record a diagnostic issued for the class being processed.
+     *
+     * @param kind the kind of the diagnostic
+     * @param message the text of the diagnostic
+     * @param source the {@link Tree} or {@link Element} at which it was issued, or null
+     */
+    void record(Diagnostic.Kind kind, String message, /*@Nullable*/ Object source) {
+        if (depth == 0 || fingerprint == null) {
+            return;
+        }
+        Trees trees = checker.getTreeUtils();
+        byte positionKind = NO_POSITION;
+        Tree tree = null;
+        if (source instanceof Tree) {
+            positionKind = TREE_POSITION;
+            tree = (Tree) source;
+        } else if (source instanceof Element) {
+            positionKind = ELEMENT_POSITION;
+            TreePath path = trees.getPath((Element) source);
+            if (path != null && path.getCompilationUnit() == root) {
+                tree = path.getLeaf();
+            }
+        }
+        if (positionKind == NO_POSITION) {
+            recorded.add(new RecordedDiagnostic(kind, message, NO_POSITION, -1, -1, null));
+            return;
+        }
+        SourcePositions positions = trees.getSourcePositions();
+        long start = tree == null ? -1 : positions.getStartPosition(root, tree);
+        long end = tree == null ? -1 : positions.getEndPosition(root, tree);
+        if (start < 0 || end < 0) {
+            // The diagnostic cannot be located in a later compilation.
+            invalidate();
+            return;
+        }
+        recorded.add(
+                new RecordedDiagnostic(
+                        kind, message, positionKind, (int) start, (int) end, tree.getKind()));
+    }
+
+    /**
+     * Issue cached diagnostics again, at the trees of the current compilation unit that have the
+     * recorded positions.
+     *
+     * @return false, without issuing any diagnostic, if not all positions can be found
+     */
+    private boolean replay(List<RecordedDiagnostic> diagnostics) {
+        final Map<String, Tree> wanted = new HashMap<>();
+        for (RecordedDiagnostic diagnostic : diagnostics) {
+            if (diagnostic.positionKind != NO_POSITION) {
+                wanted.put(diagnostic.positionKey(), null);
+            }
+        }
+        final SourcePositions positions = checker.getTreeUtils().getSourcePositions();
+        if (!wanted.isEmpty()) {
+            new TreeScanner<Void, Void>() {
+                @Override
+                public Void scan(Tree tree, Void p) {
+                    if (tree == null) {
+                        return null;
+                    }
+                    String key =
+                            RecordedDiagnostic.positionKey(
+                                    positions.getStartPosition(root, tree),
+                                    positions.getEndPosition(root, tree),
+                                    tree.getKind());
+                    if (wanted.containsKey(key) && wanted.get(key) == null) {
+                        wanted.put(key, tree);
+                    }
+                    return super.scan(tree, p);
+                }
+            }.scan(root, null);
+        }
+        for (Tree tree : wanted.values()) {
+            if (tree == null) {
+                return false;
+            }
+        }
+
+        Trees trees = checker.getTreeUtils();
+        for (RecordedDiagnostic diagnostic : diagnostics) {
+            switch (diagnostic.positionKind) {
+                case TREE_POSITION:
+                    trees.printMessage(
+                            diagnostic.kind,
+                            diagnostic.message,
+                            wanted.get(diagnostic.positionKey()),
+                            root);
+                    break;
+                case ELEMENT_POSITION:
+                    Tree tree = wanted.get(diagnostic.positionKey());
+                    Element element = TreeInfo.symbolFor((JCTree) tree);
+                    if (element != null) {
+                        checker.messager.printMessage(
+                                diagnostic.kind, diagnostic.message, element);
+                    } else {
+                        trees.printMessage(diagnostic.kind, diagnostic.message, tree, root);
+                    }
+                    break;
+                default:
+                    checker.messager.printMessage(diagnostic.kind, diagnostic.message);
+                    break;
+            }
+        }
+        return true;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    /// Fingerprints
+    ///
+
+    /**
+     * @return the fingerprint of a class, or null if the results of the class cannot be cached
+     */
+    private /*@Nullable*/ String computeFingerprint(TypeElement element, TreePath path) {
+        JavaFileObject source = root.getSourceFile();
+        if (source == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(environmentDigest).append('\n');
+        sb.append(element.getQualifiedName()).append('\n');
+        String sourceDigest = sourceDigest(source);
+        if (sourceDigest == null) {
+            return null;
+        }
+        sb.append(sourceDigest).append('\n');
+        appendPackage(sb, element);
+        for (TypeElement referenced : referencedClasses(path.getLeaf(), source)) {
+            sb.append(referenced.getQualifiedName()).append(' ');
+            sb.append(signature(referenced)).append('\n');
+        }
+        return digest(sb.toString().getBytes(UTF8));
+    }
+
+    /** @return the digest of the checker, its options, its code and its stub files */
+    private String computeEnvironmentDigest() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(checker.getClass().getName()).append('\n');
+        Map<String, String> options =
+                new TreeMap<>(checker.getProcessingEnvironment().getOptions());
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            sb.append(option.getKey()).append('=').append(option.getValue()).append('\n');
+        }
+
+        CodeSource codeSource = checker.getClass().getProtectionDomain().getCodeSource();
+        if (codeSource != null && codeSource.getLocation() != null) {
+            appendFileStamp(sb, codeSource.getLocation());
+        }
+
+        // The same stub files that AnnotatedTypeFactory.parseStubFiles reads. A path that names
+        // no file is a resource of the checker, which is covered by the stamp of its code.
+        for (String stubPath : StubUtil.getStubPaths(checker)) {
+            sb.append(stubPath).append('\n');
+            for (StubResource resource : StubUtil.findStubFiles(stubPath)) {
+                sb.append(resource.getDescription()).append(' ');
+                try (InputStream in = resource.getInputStream()) {
+                    sb.append(digest(readAllBytes(in)));
+                } catch (IOException e) {
+                    sb.append("unreadable");
+                }
+                sb.append('\n');
+            }
+        }
+        return digest(sb.toString().getBytes(UTF8));
+    }
+
+    /** @return the remaining content of {@code in} */
+    private static byte[] readAllBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /** Append the size and modification time of the jar file or directory at {@code url}. */
+    private static void appendFileStamp(StringBuilder sb, URL url) {
+        try {
+            File location = new File(url.toURI());
+            sb.append(location).append(' ');
+            sb.append(location.length()).append(' ').append(location.lastModified()).append('\n');
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            sb.append(url).append('\n');
+        }
+    }
+
+    /**
+     * @return the top-level classes that {@code tree} refers to, except those in {@code source},
+     *     together with all their supertypes. A class is referred to if it is named, if it occurs
+     *     in the type of an expression, or if it occurs in the signature of a member that is used.
+     */
+    private static Set<TypeElement> referencedClasses(Tree tree, final JavaFileObject source) {
+        final Set<TypeElement> result = new LinkedHashSet<>();
+        final Set<Element> typeVariables = new HashSet<>();
+        new TreeScanner<Void, Void>() {
+            @Override
+            public Void scan(Tree tree, Void p) {
+                if (tree != null) {
+                    addClassesIn(((JCTree) tree).type, result, typeVariables);
+                }
+                return super.scan(tree, p);
+            }
+
+            @Override
+            public Void visitIdentifier(IdentifierTree node, Void p) {
+                add(TreeInfo.symbol((JCTree) node));
+                return super.visitIdentifier(node, p);
+            }
+
+            @Override
+            public Void visitMemberSelect(MemberSelectTree node, Void p) {
+                add(TreeInfo.symbol((JCTree) node));
+                return super.visitMemberSelect(node, p);
+            }
+
+            @Override
+            public Void visitMemberReference(MemberReferenceTree node, Void p) {
+                add(TreeInfo.symbol((JCTree) node));
+                return super.visitMemberReference(node, p);
+            }
+
+            @Override
+            public Void visitNewClass(NewClassTree node, Void p) {
+                add(((JCNewClass) node).constructor);
+                return super.visitNewClass(node, p);
+            }
+
+            private void add(/*@Nullable*/ Symbol symbol) {
+                if (symbol == null) {
+                    return;
+                }
+                TypeElement topLevel = topLevelClass(symbol);
+                if (topLevel != null) {
+                    result.add(topLevel);
+                }
+                addClassesIn(symbol.type, result, typeVariables);
+            }
+        }.scan(tree, null);
+
+        Deque<TypeElement> worklist = new ArrayDeque<>(result);
+        while (!worklist.isEmpty()) {
+            TypeElement type = worklist.remove();
+            List<TypeMirror> supertypes = new ArrayList<>();
+            supertypes.add(type.getSuperclass());
+            supertypes.addAll(type.getInterfaces());
+            for (TypeMirror supertype : supertypes) {
+                if (supertype.getKind() == TypeKind.DECLARED) {
+                    TypeElement topLevel = topLevelClass(((DeclaredType) supertype).asElement());
+                    if (topLevel != null && result.add(topLevel)) {
+                        worklist.add(topLevel);
+                    }
+                }
+            }
+        }
+
+        List<TypeElement> inSource = new ArrayList<>();
+        for (TypeElement type : result) {
+            if (((ClassSymbol) type).sourcefile == source) {
+                inSource.add(type);
+            }
+        }
+        result.removeAll(inSource);
+        return result;
+    }
+
+    /**
+     * Add the top-level classes of the classes that occur in {@code type} to {@code classes}.
+     *
+     * @param typeVariables the type variables whose bounds were visited already
+     */
+    private static void addClassesIn(
+            /*@Nullable*/ TypeMirror type, Set<TypeElement> classes, Set<Element> typeVariables) {
+        if (type == null) {
+            return;
+        }
+        switch (type.getKind()) {
+            case DECLARED:
+                TypeElement topLevel = topLevelClass(((DeclaredType) type).asElement());
+                if (topLevel != null) {
+                    classes.add(topLevel);
+                }
+                for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                    addClassesIn(argument, classes, typeVariables);
+                }
+                break;
+            case ARRAY:
+                addClassesIn(((ArrayType) type).getComponentType(), classes, typeVariables);
+                break;
+            case WILDCARD:
+                addClassesIn(((WildcardType) type).getExtendsBound(), classes, typeVariables);
+                addClassesIn(((WildcardType) type).getSuperBound(), classes, typeVariables);
+                break;
+            case TYPEVAR:
+                TypeVariable typeVariable = (TypeVariable) type;
+                if (typeVariables.add(typeVariable.asElement())) {
+                    addClassesIn(typeVariable.getUpperBound(), classes, typeVariables);
+                    addClassesIn(typeVariable.getLowerBound(), classes, typeVariables);
+                }
+                break;
+            case INTERSECTION:
+                for (TypeMirror bound : ((IntersectionType) type).getBounds()) {
+                    addClassesIn(bound, classes, typeVariables);
+                }
+                break;
+            case UNION:
+                for (TypeMirror alternative : ((UnionType) type).getAlternatives()) {
+                    addClassesIn(alternative, classes, typeVariables);
+                }
+                break;
+            case EXECUTABLE:
+                ExecutableType method = (ExecutableType) type;
+                for (TypeVariable methodTypeVariable : method.getTypeVariables()) {
+                    addClassesIn(methodTypeVariable, classes, typeVariables);
+                }
+                addClassesIn(method.getReturnType(), classes, typeVariables);
+                for (TypeMirror parameter : method.getParameterTypes()) {
+                    addClassesIn(parameter, classes, typeVariables);
+                }
+                for (TypeMirror thrown : method.getThrownTypes()) {
+                    addClassesIn(thrown, classes, typeVariables);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** @return the top-level class that declares {@code element}, or null if there is none */
+    private static /*@Nullable*/ TypeElement topLevelClass(/*@Nullable*/ Element element) {
+        TypeElement result = null;
+        while (element != null && element.getKind() != ElementKind.PACKAGE) {
+            if (element instanceof TypeElement) {
+                result = (TypeElement) element;
+            }
+            element = element.getEnclosingElement();
+        }
+        return result;
+    }
+
+    /** @return the signature of a top-level class, see the class documentation */
+    private String signature(TypeElement type) {
+        String result = signatures.get(type);
+        if (result == null) {
+            StringBuilder sb = new StringBuilder();
+            appendPackage(sb, type);
+            appendSignature(sb, type);
+            result = digest(sb.toString().getBytes(UTF8));
+            signatures.put(type, result);
+        }
+        return result;
+    }
+
+    /**
+     * Append the annotations of the package of the top-level class {@code type} and the digest of
+     * the source of its package-info file, if it was read from source. The annotations do not
+     * suffice on their own, because annotations with source retention are not visible when the
+     * package-info file is read from a class file.
+     */
+    private static void appendPackage(StringBuilder sb, TypeElement type) {
+        Element pkg = type.getEnclosingElement();
+        if (!(pkg instanceof PackageElement)) {
+            return;
+        }
+        sb.append(((PackageElement) pkg).getQualifiedName()).append(' ');
+        appendAnnotations(sb, pkg.getAnnotationMirrors());
+        ClassSymbol packageInfo = ((PackageSymbol) pkg).package_info;
+        if (packageInfo != null
+                && packageInfo.sourcefile != null
+                && packageInfo.sourcefile.getKind() == JavaFileObject.Kind.SOURCE) {
+            sb.append(sourceDigest(packageInfo.sourcefile));
+        }
+        sb.append('\n');
+    }
+
+    /** @return the digest of the content of {@code source}, or null if it cannot be read */
+    private static /*@Nullable*/ String sourceDigest(JavaFileObject source) {
+        try {
+            return digest(source.getCharContent(true).toString().getBytes(UTF8));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void appendSignature(StringBuilder sb, Element element) {
+        sb.append(element.getKind()).append(' ');
+        sb.append(element.getModifiers()).append(' ');
+        sb.append(element.getSimpleName()).append(' ');
+        sb.append(element.asType()).append(' ');
+        appendAnnotations(sb, element.getAnnotationMirrors());
+        switch (element.getKind()) {
+            case CLASS:
+            case INTERFACE:
+            case ENUM:
+            case ANNOTATION_TYPE:
+                TypeElement type = (TypeElement) element;
+                sb.append(type.getSuperclass()).append(' ');
+                sb.append(type.getInterfaces()).append(' ');
+                appendTypeParameters(sb, type.getTypeParameters());
+                sb.append('\n');
+                for (Element member : type.getEnclosedElements()) {
+                    appendSignature(sb, member);
+                }
+                break;
+            case METHOD:
+            case CONSTRUCTOR:
+                ExecutableElement method = (ExecutableElement) element;
+                appendTypeParameters(sb, method.getTypeParameters());
+                for (VariableElement parameter : method.getParameters()) {
+                    sb.append(parameter.asType()).append(' ');
+                    appendAnnotations(sb, parameter.getAnnotationMirrors());
+                }
+                sb.append(method.getThrownTypes()).append(' ');
+                sb.append(method.getDefaultValue()).append('\n');
+                break;
+            case FIELD:
+            case ENUM_CONSTANT:
+                sb.append(((VariableElement) element).getConstantValue()).append('\n');
+                break;
+            default:
+                sb.append('\n');
+                break;
+        }
+    }
+
+    private static void appendTypeParameters(
+            StringBuilder sb, List<? extends TypeParameterElement> typeParameters) {
+        for (TypeParameterElement typeParameter : typeParameters) {
+            sb.append(typeParameter).append(typeParameter.getBounds()).append(' ');
+            appendAnnotations(sb, typeParameter.getAnnotationMirrors());
+        }
+    }
+
+    private static void appendAnnotations(
+            StringBuilder sb, List<? extends AnnotationMirror> annotations) {
+        for (AnnotationMirror annotation : annotations) {
+            sb.append(annotation).append(' ');
+        }
+    }
+
+    /** @return the hexadecimal SHA-1 digest of {@code content} */
+    private static String digest(byte[] content) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1.
+            throw new Error("ResultsCache: SHA-1 is not available", e);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest(content)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    /// Cache files
+    ///
+
+    /**
+     * @return the cached diagnostics of the class being processed, or null if there is no cache
+     *     file with the current fingerprint
+     */
+    private /*@Nullable*/ List<RecordedDiagnostic> read() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream data =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (data.readInt() != MAGIC
+                    || data.readInt() != VERSION
+                    || !data.readUTF().equals(fingerprint)) {
+                return null;
+            }
+            int count = data.readInt();
+            List<RecordedDiagnostic> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Diagnostic.Kind kind = Diagnostic.Kind.valueOf(data.readUTF());
+                String message = readText(data);
+                byte positionKind = data.readByte();
+                if (positionKind == NO_POSITION) {
+                    result.add(new RecordedDiagnostic(kind, message, NO_POSITION, -1, -1, null));
+                } else {
+                    int start = data.readInt();
+                    int end = data.readInt();
+                    Tree.Kind treeKind = Tree.Kind.valueOf(data.readUTF());
+                    result.add(
+                            new RecordedDiagnostic(
+                                    kind, message, positionKind, start, end, treeKind));
+                }
+            }
+            return result;
+        } catch (IOException | IllegalArgumentException e) {
+            // A corrupt or outdated file is ignored and later overwritten.
+            return null;
+        }
+    }
+
+    /** Write the cache file of the class being processed, replacing any previous one. */
+    private void write() throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("could not create directory " + dir);
+        }
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try (DataOutputStream data =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeUTF(fingerprint);
+            data.writeInt(recorded.size());
+            for (RecordedDiagnostic diagnostic : recorded) {
+                data.writeUTF(diagnostic.kind.name());
+                writeText(data, diagnostic.message);
+                data.writeByte(diagnostic.positionKind);
+                if (diagnostic.positionKind != NO_POSITION) {
+                    data.writeInt(diagnostic.start);
+                    data.writeInt(diagnostic.end);
+                    data.writeUTF(diagnostic.treeKind.name());
+                }
+            }
+        }
+        // Concurrent compilations may write the same file; each write replaces it as a whole.
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Read a string of any length written by {@link #writeText}. */
+    private static String readText(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /** Write a string of any length; {@link DataOutputStream#writeUTF} is limited to 64KB. */
+    private static void writeText(DataOutputStream data, String text) throws IOException {
+        byte[] bytes = text.getBytes(UTF8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /** A diagnostic and the position of the tree at which it was issued. */
+    private static final class RecordedDiagnostic {
+        final Diagnostic.Kind kind;
+        final String message;
+        /** One of {@link #NO_POSITION}, {@link #TREE_POSITION} and {@link #ELEMENT_POSITION}. */
+        final byte positionKind;
+        /** The start and end positions and the kind of the tree, unless there is no position. */
+        final int start;
+
+        final int end;
+        final /*@Nullable*/ Tree.Kind treeKind;
+
+        RecordedDiagnostic(
+                Diagnostic.Kind kind,
+                String message,
+                byte positionKind,
+                int start,
+                int end,
+                /*@Nullable*/ Tree.Kind treeKind) {
+            this.kind = kind;
+            this.message = message;
+            this.positionKind = positionKind;
+            this.start = start;
+            this.end = end;
+            this.treeKind = treeKind;
+        }
+
+        /** @return the key that identifies the tree of this diagnostic in its compilation unit */
+        String positionKey() {
+            return positionKey(start, end, treeKind);
+        }
+
+        static String positionKey(long start, long end, Tree.Kind treeKind) {
+            return start + ":" + end + ":" + treeKind;
+        }
+    }
+}
@@ -20,6 +20,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryPoolMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -51,10 +54,13 @@ import org.checkerframework.framework.qual.AnnotatedFor;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.util.CFContext;
 import org.checkerframework.framework.util.CheckerMain;
+import org.checkerframework.framework.util.FlowExpressionParseUtil;
 import org.checkerframework.framework.util.OptionConfiguration;
+import org.checkerframework.framework.util.PhaseProfiler;
 import org.checkerframework.javacutil.AbstractTypeProcessor;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorHandler;
 import org.checkerframework.javacutil.ErrorReporter;
@@ -297,15 +303,36 @@ import org.checkerframework.javacutil.TreeUtils;
 
     /// Miscellaneous debugging options
 
-    // Whether to output resource statistics at JVM shutdown
+    // Whether to output resource statistics at JVM shutdown; the optional value
+    // is the name of a CSV file for the time and allocations per phase
     // org.checkerframework.framework.source.SourceChecker.shutdownHook()
+    // org.checkerframework.framework.util.PhaseProfiler
     "resourceStats",
 
     // Set the cache size for caches in AnnotatedTypeFactory
     "atfCacheSize",
 
     // Sets AnnotatedTypeFactory shouldCache to false
-    "atfDoNotCache"
+    "atfDoNotCache",
+
+    // Bound the type caches in AnnotatedTypeFactory by the total size of the
+    // cached types instead of by their number
+    "atfCacheWeight",
+
+    // Use a segmented LRU policy for the type caches in AnnotatedTypeFactory
+    // instead of evicting the types that were stored first
+    "atfCacheSegmented",
+
+    // Cache the dataflow stores before and after each node instead of re-running
+    // the transfer function on every query; the optional value is the maximal
+    // number of cached stores
+    // org.checkerframework.dataflow.analysis.AnalysisResult.enableStoreCache(int)
+    "flowStoreCacheSize",
+
+    // Directory in which to store the diagnostics of each class, so that
+    // unchanged classes are not checked again in a later compilation
+    // org.checkerframework.framework.source.ResultsCache
+    "resultsCache"
 })
 public abstract class SourceChecker extends AbstractTypeProcessor
         implements ErrorHandler, CFContext, OptionConfiguration {
@@ -338,9 +365,19 @@ public abstract class SourceChecker extends AbstractTypeProcessor
      */
     private CompilationUnitTree previousErrorCompilationUnit;
 
+    /**
+     * The cache of diagnostics, if the "resultsCache" option is given and this is the outermost
+     * checker; null otherwise. Use {@link #getResultsCache()} to access the cache from any
+     * checker.
+     */
+    private /*@Nullable*/ ResultsCache resultsCache;
+
     /** The visitor to use. */
     protected SourceVisitor<?, ?> visitor;
 
+    /** The profiler for the phases of this checker; created by {@link #getProfiler()}. */
+    private PhaseProfiler profiler;
+
     /** Keys for warning suppressions specified on the command line */
     private String /*@Nullable*/ [] suppressWarnings;
 
@@ -744,6 +781,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     }
 
     private void logCheckerError(CheckerError ce) {
+        invalidateCachedResults();
         if (ce.getMessage() == null) {
             final String stackTrace = formatStackTrace(ce.getStackTrace());
             ErrorReporter.errorAbort(
@@ -812,6 +850,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
                                 + this.getClass()
                                 + "! Please ensure your checker is properly initialized.");
             }
+            if (parentChecker == null && hasOption("resultsCache") && !hasOption("infer")) {
+                // Whole-program inference depends on all classes being checked.
+                resultsCache = new ResultsCache(this, getOption("resultsCache"));
+            }
             if (shouldAddShutdownHook()) {
                 Runtime.getRuntime()
                         .addShutdownHook(
@@ -849,6 +891,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
 
         // TODO: hack to clear out static caches.
         AnnotationUtils.clear();
+        FlowExpressionParseUtil.clearCache();
     }
 
     /**
@@ -872,7 +915,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         }
     }
 
-    /** Print resource usage statistics */
+    /**
+     * Print resource usage statistics. The time and allocations per phase are written as CSV to
+     * the file named by the value of the "resourceStats" option, or printed if it has no value.
+     */
     protected void printStats() {
         List<MemoryPoolMXBean> memoryPools = ManagementFactory.getMemoryPoolMXBeans();
         for (MemoryPoolMXBean memoryPool : memoryPools) {
@@ -880,6 +926,45 @@ public abstract class SourceChecker extends AbstractTypeProcessor
             System.out.println("  Pool type: " + memoryPool.getType());
             System.out.println("  Peak usage: " + memoryPool.getPeakUsage());
         }
+        for (String cacheStatistics : CollectionUtils.getCacheStatistics()) {
+            System.out.println("Cache " + cacheStatistics);
+        }
+
+        List<String> lines = new ArrayList<String>();
+        lines.add(PhaseProfiler.CSV_HEADER);
+        collectPhaseProfiles(lines);
+        String file = getOption("resourceStats");
+        if (file == null || file.isEmpty()) {
+            System.out.println("Phase profile:");
+            for (String line : lines) {
+                System.out.println("  " + line);
+            }
+        } else {
+            try {
+                Files.write(Paths.get(file), lines, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("Could not write phase profile to " + file + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Return the profiler for the phases of this checker. It records nothing unless the
+     * "resourceStats" option is given.
+     */
+    public PhaseProfiler getProfiler() {
+        if (profiler == null) {
+            profiler = new PhaseProfiler(getClass().getSimpleName(), hasOption("resourceStats"));
+        }
+        return profiler;
+    }
+
+    /**
+     * Append the phase profile of this checker as CSV lines to {@code lines}. Checkers that run
+     * other checkers add their profiles as well.
+     */
+    protected void collectPhaseProfiles(List<String> lines) {
+        getProfiler().appendCsv(lines);
     }
 
     /** Output the warning about source level at most once. */
@@ -901,6 +986,17 @@ public abstract class SourceChecker extends AbstractTypeProcessor
      */
     @Override
     public void typeProcess(TypeElement e, TreePath p) {
+        if (replayCachedResults(e, p)) {
+            return;
+        }
+        try {
+            typeProcessUncached(e, p);
+        } finally {
+            storeCachedResults();
+        }
+    }
+
+    private void typeProcessUncached(TypeElement e, TreePath p) {
         if (e == null) {
             messager.printMessage(
                     javax.tools.Diagnostic.Kind.ERROR, "Refusing to process empty TypeElement");
@@ -926,6 +1022,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         if (log.nerrors > this.errsOnLastExit) {
             this.errsOnLastExit = log.nerrors;
             previousErrorCompilationUnit = p.getCompilationUnit();
+            invalidateCachedResults();
             return;
         }
         if (p.getCompilationUnit() == previousErrorCompilationUnit) {
@@ -933,16 +1030,22 @@ public abstract class SourceChecker extends AbstractTypeProcessor
             // skip it. This is in particular necessary for Java errors, which
             // show up once, but further calls to typeProcess will happen.
             // See Issue 346.
+            invalidateCachedResults();
             return;
         } else {
             previousErrorCompilationUnit = null;
         }
+        PhaseProfiler profiler = getProfiler();
         if (p.getCompilationUnit() != currentRoot) {
             currentRoot = p.getCompilationUnit();
+            if (profiler.isEnabled() && currentRoot.getSourceFile() != null) {
+                profiler.setCompilationUnit(currentRoot.getSourceFile().getName());
+            }
             visitor.setRoot(currentRoot);
         }
 
         // Visit the attributed tree.
+        profiler.start(PhaseProfiler.Phase.VISITOR);
         try {
             visitor.visit(p);
         } catch (CheckerError ce) {
@@ -950,12 +1053,69 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         } catch (Throwable t) {
             logCheckerError(wrapThrowableAsCheckerError("SourceChecker.typeProcess", t, p));
         } finally {
+            profiler.stop(PhaseProfiler.Phase.VISITOR);
             // Also add possibly deferred diagnostics, which will get published back in
             // AbstractTypeProcessor.
             this.errsOnLastExit = log.nerrors;
         }
     }
 
+    /** @return the cache of diagnostics of the outermost checker, or null if there is none */
+    private /*@Nullable*/ ResultsCache getResultsCache() {
+        SourceChecker checker = this;
+        while (checker.parentChecker != null) {
+            checker = checker.parentChecker;
+        }
+        return checker.resultsCache;
+    }
+
+    /**
+     * Replay the cached diagnostics of a class, if the "resultsCache" option is given and the
+     * class is unchanged since they were cached. If false is returned, the class must be processed
+     * and {@link #storeCachedResults()} must be called afterwards, even if processing fails. Calls
+     * may be nested; only the outermost call has an effect, so that each checker that processes a
+     * class may call this method.
+     *
+     * @param element the class to process
+     * @param path the path to the class
+     * @return true if the diagnostics were replayed and the class must not be processed
+     */
+    protected final boolean replayCachedResults(TypeElement element, TreePath path) {
+        ResultsCache cache = getResultsCache();
+        if (cache == null || element == null || path == null) {
+            return false;
+        }
+        Log log = Log.instance(((JavacProcessingEnvironment) processingEnv).getContext());
+        // If there are Java errors, the class is not checked and its results are not stored.
+        boolean mayReplay =
+                log.nerrors <= this.errsOnLastExit
+                        && path.getCompilationUnit() != previousErrorCompilationUnit;
+        if (!cache.begin(element, path, mayReplay)) {
+            return false;
+        }
+        this.errsOnLastExit = log.nerrors;
+        return true;
+    }
+
+    /** Store the diagnostics of the class passed to {@link #replayCachedResults}. */
+    protected final void storeCachedResults() {
+        ResultsCache cache = getResultsCache();
+        if (cache != null) {
+            cache.end();
+        }
+    }
+
+    /**
+     * Do not store the diagnostics of the class being processed, e.g. because it was not checked
+     * completely.
+     */
+    protected final void invalidateCachedResults() {
+        ResultsCache cache = getResultsCache();
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
     private CheckerError wrapThrowableAsCheckerError(
             String where, Throwable t, /*@Nullable*/ TreePath p) {
         return new CheckerError(
@@ -1145,6 +1305,11 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         } else {
             ErrorReporter.errorAbort("invalid position source: " + source.getClass().getName());
         }
+
+        ResultsCache cache = getResultsCache();
+        if (cache != null) {
+            cache.record(kind, messageText, source);
+        }
     }
 
     /**
@@ -1172,6 +1337,10 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     public void message(Diagnostic.Kind kind, String msg, Object... args) {
         if (messager != null) {
             messager.printMessage(kind, String.format(msg, args));
+            ResultsCache cache = getResultsCache();
+            if (cache != null && kind != Diagnostic.Kind.NOTE && kind != Diagnostic.Kind.OTHER) {
+                cache.record(kind, String.format(msg, args), null);
+            }
         } else {
             System.err.println(kind + ": " + String.format(msg, args));
         }
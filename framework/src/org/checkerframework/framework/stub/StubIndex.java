@@ -0,0 +1,422 @@
+package org.checkerframework.framework.stub;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.*;
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.stubparser.JavaParser;
+import org.checkerframework.stubparser.ParseException;
+import org.checkerframework.stubparser.ast.CompilationUnit;
+import org.checkerframework.stubparser.ast.IndexUnit;
+import org.checkerframework.stubparser.ast.Node;
+import org.checkerframework.stubparser.ast.body.TypeDeclaration;
+
+/**
+ * A stub file, split into sections and into the declarations of the top-level types of each
+ * section. A section is one {@code package} declaration with its imports and types; a stub file may
+ * contain several.
+ *
+ * <p>An index is either parsed from the source of a stub file, or read from its precompiled binary
+ * form. The binary form holds the source text of each section header and of each type declaration
+ * separately, together with the qualified type names. A type declaration is parsed only when it is
+ * first requested, so that a checker parses only the stub declarations of the types that it looks
+ * up.
+ *
+ * <p>The binary form is generated at build time by {@link #main}, which writes the index of {@code
+ * X.astub} to {@code X.astub.idx}. It records a digest of the stub file, so that an index that is
+ * out of date with its stub file can be detected and ignored.
+ *
+ * <p>Instances are shared by all type factories in the JVM, so the lazy parsing is synchronized.
+ * The parsed declarations must not be modified.
+ */
+public class StubIndex {
+
+    /** The suffix of the file name of a precompiled index, which follows that of its stub file. */
+    public static final String SUFFIX = ".idx";
+
+    /** The first four bytes of a precompiled index: "CFSI". */
+    private static final int MAGIC = 0x43465349;
+
+    /** The version of the binary format. */
+    private static final int VERSION = 1;
+
+    /** The encoding of the source text in a precompiled index. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** One {@code package} declaration of a stub file, with its imports and types. */
+    private static final class Section {
+        /** The package name, or {@code null} for the default package. */
+        final /*@Nullable*/ String packageName;
+
+        /** The source text of the package declaration and imports, if not yet parsed. */
+        /*@Nullable*/ String headerSource;
+
+        /** The package declaration and imports, without types; parsed lazily. */
+        /*@Nullable*/ CompilationUnit header;
+
+        /** The qualified names of the top-level types, in the order of their declarations. */
+        final String[] typeNames;
+
+        /** The source text of each type declaration, if not yet parsed. */
+        final /*@Nullable*/ String[] typeSources;
+
+        /** The type declarations; parsed lazily. */
+        final /*@Nullable*/ TypeDeclaration[] types;
+
+        Section(/*@Nullable*/ String packageName, int numberOfTypes) {
+            this.packageName = packageName;
+            this.typeNames = new String[numberOfTypes];
+            this.typeSources = new String[numberOfTypes];
+            this.types = new TypeDeclaration[numberOfTypes];
+        }
+    }
+
+    /** The hexadecimal SHA-1 digest of the stub file. */
+    private final String digest;
+
+    /** The sections of the stub file. */
+    private final Section[] sections;
+
+    /** Whether this index was read from its precompiled binary form. */
+    private final boolean precompiled;
+
+    private StubIndex(String digest, Section[] sections, boolean precompiled) {
+        this.digest = digest;
+        this.sections = sections;
+        this.precompiled = precompiled;
+    }
+
+    /**
+     * Parse the stub file with content {@code content}.
+     *
+     * @param content the bytes of the stub file, in the platform's default encoding
+     * @param keepSources whether to also split the source text, as needed by {@link #write}
+     * @return the index of the stub file
+     */
+    public static StubIndex parse(byte[] content, boolean keepSources) throws ParseException {
+        IndexUnit unit = JavaParser.parse(new ByteArrayInputStream(content));
+        String text = keepSources ? new String(content, Charset.defaultCharset()) : null;
+        SourcePositions positions = keepSources ? new SourcePositions(text) : null;
+
+        List<CompilationUnit> cus = unit.getCompilationUnits();
+        Section[] sections = new Section[cus.size()];
+        int sectionStart = 0;
+        for (int i = 0; i < sections.length; i++) {
+            CompilationUnit cu = cus.get(i);
+            List<TypeDeclaration> types = cu.getTypes();
+            int numberOfTypes = types == null ? 0 : types.size();
+            Section section =
+                    new Section(
+                            cu.getPackage() == null ? null : cu.getPackage().getName().toString(),
+                            numberOfTypes);
+            section.header = cu;
+            for (int j = 0; j < numberOfTypes; j++) {
+                TypeDeclaration type = types.get(j);
+                section.typeNames[j] = typeName(section.packageName, type);
+                section.types[j] = type;
+            }
+            if (positions != null) {
+                // The header extends from the end of the previous section to the first type
+                // declaration; this includes annotations on the package declaration.
+                int headerEnd =
+                        numberOfTypes == 0 ? positions.end(cu) : positions.begin(types.get(0));
+                section.headerSource = text.substring(sectionStart, headerEnd);
+                for (int j = 0; j < numberOfTypes; j++) {
+                    TypeDeclaration type = types.get(j);
+                    section.typeSources[j] =
+                            text.substring(positions.begin(type), positions.end(type));
+                }
+                sectionStart =
+                        numberOfTypes == 0
+                                ? headerEnd
+                                : positions.end(types.get(numberOfTypes - 1));
+            }
+            sections[i] = section;
+        }
+        return new StubIndex(digest(content), sections, false);
+    }
+
+    /**
+     * The qualified name of a top-level type declaration. The name of a declaration may be a binary
+     * name such as "A$B", which StubParser uses for nested classes.
+     */
+    private static String typeName(/*@Nullable*/ String packageName, TypeDeclaration type) {
+        String name = type.getName().replace('$', '.');
+        return packageName == null ? name : packageName + "." + name;
+    }
+
+    /**
+     * Read a precompiled index.
+     *
+     * @param in the binary form, as written by {@link #write}; closed by this method
+     * @return the index
+     * @throws IOException if {@code in} cannot be read or is not a precompiled index of this
+     *     version
+     */
+    public static StubIndex read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        try {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw new IOException("not a precompiled stub index of version " + VERSION);
+            }
+            String digest = data.readUTF();
+            Section[] sections = new Section[data.readInt()];
+            for (int i = 0; i < sections.length; i++) {
+                String packageName = data.readBoolean() ? data.readUTF() : null;
+                String headerSource = readText(data);
+                Section section = new Section(packageName, data.readInt());
+                section.headerSource = headerSource;
+                for (int j = 0; j < section.typeNames.length; j++) {
+                    section.typeNames[j] = data.readUTF();
+                    section.typeSources[j] = readText(data);
+                }
+                sections[i] = section;
+            }
+            return new StubIndex(digest, sections, true);
+        } finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Write the binary form of this index. This index must have been created by {@link
+     * #parse(byte[], boolean)} with {@code keepSources} set.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeUTF(digest);
+        data.writeInt(sections.length);
+        for (Section section : sections) {
+            if (section.headerSource == null) {
+                throw new IllegalStateException("StubIndex.write: source text was not kept");
+            }
+            data.writeBoolean(section.packageName != null);
+            if (section.packageName != null) {
+                data.writeUTF(section.packageName);
+            }
+            writeText(data, section.headerSource);
+            data.writeInt(section.typeNames.length);
+            for (int j = 0; j < section.typeNames.length; j++) {
+                data.writeUTF(section.typeNames[j]);
+                writeText(data, section.typeSources[j]);
+            }
+        }
+        data.flush();
+    }
+
+    /** Read a string of any length written by {@link #writeText}. */
+    private static String readText(DataInputStream data) throws IOException {
+        byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /** Write a string of any length; {@link DataOutputStream#writeUTF} is limited to 64KB. */
+    private static void writeText(DataOutputStream data, String text) throws IOException {
+        byte[] bytes = text.getBytes(UTF8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /** @return the hexadecimal SHA-1 digest of the stub file */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return true if this index was read from its precompiled binary form, so that its type
+     *     declarations are parsed one at a time
+     */
+    public boolean isPrecompiled() {
+        return precompiled;
+    }
+
+    /** @return the number of sections of the stub file */
+    public int getNumberOfSections() {
+        return sections.length;
+    }
+
+    /** @return the package name of section {@code i}, or {@code null} for the default package */
+    public /*@Nullable*/ String getPackageName(int i) {
+        return sections[i].packageName;
+    }
+
+    /**
+     * Return the package declaration and imports of section {@code i}, parsing them if necessary.
+     * The types of the result are not necessarily set; use {@link #getType} instead.
+     */
+    public synchronized CompilationUnit getHeader(int i) throws ParseException {
+        Section section = sections[i];
+        if (section.header == null) {
+            section.header = parseText(section.headerSource);
+            section.headerSource = null;
+        }
+        return section.header;
+    }
+
+    /** @return the number of top-level types of section {@code i} */
+    public int getNumberOfTypes(int i) {
+        return sections[i].typeNames.length;
+    }
+
+    /** @return the qualified names of the top-level types of section {@code i} */
+    public List<String> getTypeNames(int i) {
+        List<String> result = new ArrayList<String>(sections[i].typeNames.length);
+        for (String name : sections[i].typeNames) {
+            result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * Return top-level type declaration {@code j} of section {@code i}, parsing it if necessary.
+     */
+    public synchronized TypeDeclaration getType(int i, int j) throws ParseException {
+        Section section = sections[i];
+        if (section.types[j] == null) {
+            List<TypeDeclaration> parsed = parseText(section.typeSources[j]).getTypes();
+            if (parsed == null || parsed.size() != 1) {
+                throw new ParseException(
+                        "StubIndex: expected one declaration of " + section.typeNames[j]);
+            }
+            section.types[j] = parsed.get(0);
+            section.typeSources[j] = null;
+        }
+        return section.types[j];
+    }
+
+    /** Parse a section header or a type declaration in isolation. */
+    private static CompilationUnit parseText(String text) throws ParseException {
+        IndexUnit unit = JavaParser.parse(new ByteArrayInputStream(text.getBytes(UTF8)), "UTF-8");
+        List<CompilationUnit> cus = unit.getCompilationUnits();
+        if (cus.size() != 1) {
+            throw new ParseException(
+                    "StubIndex: expected one compilation unit, found " + cus.size());
+        }
+        return cus.get(0);
+    }
+
+    /** @return the hexadecimal SHA-1 digest of {@code content} */
+    public static String digest(byte[] content) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-1.
+            throw new Error("StubIndex: SHA-1 is not available", e);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest(content)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Converts the line and column positions of the parser into offsets in the source text. Like
+     * the parser, it counts a tab as up to 8 columns and CR, LF, and CR LF as line terminators.
+     */
+    private static final class SourcePositions {
+        private final String text;
+
+        /** The offset of the first character of each line; line 1 is at index 1. */
+        private final int[] lineStarts;
+
+        SourcePositions(String text) {
+            this.text = text;
+            List<Integer> starts = new ArrayList<Integer>();
+            starts.add(0);
+            starts.add(0);
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n'
+                        || (c == '\r'
+                                && (i + 1 == text.length() || text.charAt(i + 1) != '\n'))) {
+                    starts.add(i + 1);
+                }
+            }
+            lineStarts = new int[starts.size()];
+            for (int i = 0; i < lineStarts.length; i++) {
+                lineStarts[i] = starts.get(i);
+            }
+        }
+
+        /** @return the offset of the first character of {@code node} */
+        int begin(Node node) {
+            return offset(node.getBeginLine(), node.getBeginColumn());
+        }
+
+        /** @return the offset just after the last character of {@code node} */
+        int end(Node node) {
+            return offset(node.getEndLine(), node.getEndColumn()) + 1;
+        }
+
+        /** @return the offset of the character at 1-based {@code line} and {@code column} */
+        private int offset(int line, int column) {
+            int offset = lineStarts[line];
+            int col = 0;
+            while (true) {
+                col = text.charAt(offset) == '\t' ? (col / 8 + 1) * 8 : col + 1;
+                if (col >= column) {
+                    return offset;
+                }
+                offset++;
+            }
+        }
+    }
+
+    /**
+     * Write the precompiled index of each given stub file {@code X.astub} to {@code X.astub.idx}.
+     *
+     * @param args the stub files
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java StubIndex file.astub ...");
+            System.out.println("Writes the precompiled index of each stub file to file.astub.idx");
+            return;
+        }
+        for (String arg : args) {
+            File file = new File(arg);
+            byte[] content = new byte[(int) file.length()];
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                in.readFully(content);
+            } finally {
+                in.close();
+            }
+            StubIndex index;
+            try {
+                index = parse(content, true);
+            } catch (ParseException e) {
+                System.err.println("StubIndex: cannot parse " + arg + ": " + e.getMessage());
+                System.exit(1);
+                return; // dead code
+            }
+            OutputStream out = new FileOutputStream(arg + SUFFIX);
+            try {
+                index.write(out);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -4,8 +4,11 @@ package org.checkerframework.framework.stub;
 import org.checkerframework.checker.nullness.qual.*;
 */
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -35,13 +38,13 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcard
 import org.checkerframework.framework.type.visitor.AnnotatedTypeMerger;
 import org.checkerframework.framework.util.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.Pair;
-import org.checkerframework.stubparser.JavaParser;
+import org.checkerframework.stubparser.ParseException;
 import org.checkerframework.stubparser.ast.CompilationUnit;
 import org.checkerframework.stubparser.ast.ImportDeclaration;
-import org.checkerframework.stubparser.ast.IndexUnit;
 import org.checkerframework.stubparser.ast.PackageDeclaration;
 import org.checkerframework.stubparser.ast.TypeParameter;
 import org.checkerframework.stubparser.ast.body.BodyDeclaration;
@@ -69,7 +72,11 @@ import org.checkerframework.stubparser.ast.type.ReferenceType;
 import org.checkerframework.stubparser.ast.type.Type;
 import org.checkerframework.stubparser.ast.type.WildcardType;
 
-/** Main entry point is: {@link StubParser#parse(Map, Map)} */
+/**
+ * Main entry point is: {@link StubParser#parse(Map, Map)}, or, to apply the stub file lazily,
+ * {@link StubParser#parsePackages(Map, Map)} followed by {@link
+ * StubParser#parseTypeDeclarations(String, Map, Map)} for each type that is used.
+ */
 // Full entry point signature:
 // parse(Map<Element, AnnotatedTypeMirror>, Map<String, Set<AnnotationMirror>>)}
 public class StubParser {
@@ -90,7 +97,13 @@ public class StubParser {
     /** The file being parsed (makes error messages more informative). */
     private final String filename;
 
-    private final IndexUnit index;
+    private final StubIndex index;
+
+    /**
+     * The sections and positions in {@link #index} of the top-level type declarations, keyed by
+     * qualified type name. Computed lazily by {@link #getTypeNames}.
+     */
+    private /*@Nullable*/ Map<String, List<Pair<Integer, Integer>>> typeDeclarations;
     private final ProcessingEnvironment processingEnv;
     private final AnnotatedTypeFactory atypeFactory;
     private final Elements elements;
@@ -136,6 +149,25 @@ public class StubParser {
             InputStream inputStream,
             AnnotatedTypeFactory factory,
             ProcessingEnvironment env) {
+        this(filename, inputStream, null, factory, env);
+    }
+
+    /**
+     * @param filename name of stub file
+     * @param inputStream of stub file to parse
+     * @param indexStream of the precompiled index of the stub file, as written by {@link
+     *     StubIndex#main}, or {@code null}; it is used instead of parsing the stub file if it is up
+     *     to date. Pass it only if the types of the stub file are applied on demand, with {@link
+     *     #parseTypeDeclarations}; otherwise, parsing the whole stub file at once is faster
+     * @param factory AnnotatedtypeFactory to use
+     * @param env ProcessingEnviroment to use
+     */
+    public StubParser(
+            String filename,
+            InputStream inputStream,
+            /*@Nullable*/ InputStream indexStream,
+            AnnotatedTypeFactory factory,
+            ProcessingEnvironment env) {
         this.filename = filename;
         this.atypeFactory = factory;
         this.processingEnv = env;
@@ -151,9 +183,9 @@ public class StubParser {
         if (debugStubParser) {
             stubDebug(String.format("parsing stub file %s%n", filename));
         }
-        IndexUnit parsedindex;
+        StubIndex parsedindex;
         try {
-            parsedindex = JavaParser.parse(inputStream);
+            parsedindex = parseStubFile(filename, inputStream, indexStream);
         } catch (Exception e) {
             ErrorReporter.errorAbort(
                     "StubParser: exception from JavaParser.parse for file " + filename, e);
@@ -227,8 +259,8 @@ public class StubParser {
 
     /** @see #supportedAnnotations */
     private Map<String, AnnotationMirror> getSupportedAnnotations() {
-        assert !index.getCompilationUnits().isEmpty();
-        CompilationUnit cu = index.getCompilationUnits().get(0);
+        assert index.getNumberOfSections() > 0;
+        CompilationUnit cu = getHeader(0);
 
         Map<String, AnnotationMirror> result = new HashMap<String, AnnotationMirror>();
 
@@ -310,28 +342,188 @@ public class StubParser {
         return result;
     }
 
+    /**
+     * The maximal number of parsed stub files that are kept in {@link #parsedStubFiles}. This is
+     * more than the number of stub files that the checkers of a typical build use.
+     */
+    private static final int PARSED_STUB_FILES_CACHE_SIZE = 64;
+
+    /**
+     * The ASTs of the stub files parsed so far, keyed by file name and a digest of the content.
+     * Parsing does not depend on the type factory, and StubParser does not modify the AST, so each
+     * stub file is parsed only once per JVM: its AST is shared by all subcheckers and by later
+     * compilations in a long-lived compiler process. Changing the content of a stub file changes
+     * the key, so an edited stub file is parsed again.
+     */
+    private static final Map<String, StubIndex> parsedStubFiles =
+            Collections.synchronizedMap(
+                    CollectionUtils.<String, StubIndex>createLRUCache(
+                            "StubParser.parsedStubFiles", PARSED_STUB_FILES_CACHE_SIZE));
+
+    /**
+     * Return the AST of the stub file {@code filename} with content {@code inputStream}, parsing
+     * it only if a stub file with the same name and content has not been parsed before. If {@code
+     * indexStream} is a precompiled index of the same content, the declarations of the stub file
+     * are read from the index, and parsed only when they are used. Closes both streams.
+     */
+    private static StubIndex parseStubFile(
+            String filename, InputStream inputStream, /*@Nullable*/ InputStream indexStream)
+            throws IOException, ParseException {
+        byte[] content;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            content = out.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+
+        String digest = StubIndex.digest(content);
+        String key = filename + "@" + digest;
+        StubIndex index = parsedStubFiles.get(key);
+        if (index != null && indexStream == null && index.isPrecompiled()) {
+            // The caller applies the whole stub file, which is faster to parse at once than one
+            // declaration at a time.
+            index = null;
+        }
+        if (index == null) {
+            if (indexStream != null) {
+                try {
+                    index = StubIndex.read(indexStream);
+                } catch (IOException e) {
+                    // A damaged or outdated index is not an error: parse the stub file instead.
+                    index = null;
+                }
+                if (index != null && !index.getDigest().equals(digest)) {
+                    index = null;
+                }
+            }
+            if (index == null) {
+                // If two threads parse the same stub file at once, both ASTs are equivalent.
+                index = StubIndex.parse(content, false);
+            }
+            parsedStubFiles.put(key, index);
+        } else if (indexStream != null) {
+            indexStream.close();
+        }
+        return index;
+    }
+
+    /**
+     * Return the package declaration and imports of section {@code i} of the stub file, reporting
+     * an error if it cannot be parsed.
+     */
+    private CompilationUnit getHeader(int i) {
+        try {
+            return index.getHeader(i);
+        } catch (ParseException e) {
+            ErrorReporter.errorAbort(
+                    "StubParser: exception from JavaParser.parse for file " + filename, e);
+            return null; // dead code
+        }
+    }
+
+    /**
+     * Return top-level type declaration {@code j} of section {@code i} of the stub file, reporting
+     * an error if it cannot be parsed.
+     */
+    private TypeDeclaration getType(int i, int j) {
+        try {
+            return index.getType(i, j);
+        } catch (ParseException e) {
+            ErrorReporter.errorAbort(
+                    "StubParser: exception from JavaParser.parse for file " + filename, e);
+            return null; // dead code
+        }
+    }
+
     /** The main entry point. Side-effects the arguments. */
     public void parse(
             Map<Element, AnnotatedTypeMirror> atypes,
             Map<String, Set<AnnotationMirror>> declAnnos) {
-        parse(this.index, atypes, declAnnos);
+        for (int i = 0; i < index.getNumberOfSections(); i++) {
+            parseSection(i, atypes, declAnnos);
+        }
     }
 
-    private void parse(
-            IndexUnit index,
+    /**
+     * Apply only the package declarations of the stub file. Side-effects the arguments. The types
+     * are applied by {@link #parseTypeDeclarations}.
+     */
+    public void parsePackages(
             Map<Element, AnnotatedTypeMirror> atypes,
             Map<String, Set<AnnotationMirror>> declAnnos) {
-        for (CompilationUnit cu : index.getCompilationUnits()) {
-            parse(cu, atypes, declAnnos);
+        for (int i = 0; i < index.getNumberOfSections(); i++) {
+            CompilationUnit cu = getHeader(i);
+            if (cu.getPackage() != null) {
+                theCompilationUnit = cu;
+                parsePackage(cu.getPackage(), atypes, declAnnos);
+            }
+        }
+    }
+
+    /**
+     * @return the qualified names of the top-level types declared in the stub file; nested types
+     *     declared as "Outer$Inner" are named "Outer.Inner"
+     */
+    public Set<String> getTypeNames() {
+        if (typeDeclarations == null) {
+            typeDeclarations = new HashMap<String, List<Pair<Integer, Integer>>>();
+            for (int i = 0; i < index.getNumberOfSections(); i++) {
+                List<String> names = index.getTypeNames(i);
+                for (int j = 0; j < names.size(); j++) {
+                    List<Pair<Integer, Integer>> positions = typeDeclarations.get(names.get(j));
+                    if (positions == null) {
+                        positions = new ArrayList<Pair<Integer, Integer>>(1);
+                        typeDeclarations.put(names.get(j), positions);
+                    }
+                    positions.add(Pair.of(i, j));
+                }
+            }
+        }
+        return Collections.unmodifiableSet(typeDeclarations.keySet());
+    }
+
+    /**
+     * Apply the declarations of the top-level type {@code typeName}, if any, and of its members.
+     * Side-effects the arguments.
+     *
+     * @param typeName a qualified type name, as returned by {@link #getTypeNames}
+     */
+    public void parseTypeDeclarations(
+            String typeName,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        getTypeNames();
+        List<Pair<Integer, Integer>> positions = typeDeclarations.get(typeName);
+        if (positions == null) {
+            return;
+        }
+        for (Pair<Integer, Integer> position : positions) {
+            CompilationUnit cu = getHeader(position.first);
+            theCompilationUnit = cu;
+            PackageDeclaration packDecl = cu.getPackage();
+            parse(
+                    getType(position.first, position.second),
+                    packDecl == null ? null : packDecl.getName().toString(),
+                    packDecl == null ? null : packDecl.getAnnotations(),
+                    atypes,
+                    declAnnos);
         }
     }
 
     private CompilationUnit theCompilationUnit;
 
-    private void parse(
-            CompilationUnit cu,
+    /** Parse section {@code i} of the stub file: one package declaration and its types. */
+    private void parseSection(
+            int i,
             Map<Element, AnnotatedTypeMirror> atypes,
             Map<String, Set<AnnotationMirror>> declAnnos) {
+        CompilationUnit cu = getHeader(i);
         theCompilationUnit = cu;
         final String packageName;
         final List<AnnotationExpr> packageAnnos;
@@ -344,10 +536,8 @@ public class StubParser {
             packageAnnos = cu.getPackage().getAnnotations();
             parsePackage(cu.getPackage(), atypes, declAnnos);
         }
-        if (cu.getTypes() != null) {
-            for (TypeDeclaration typeDecl : cu.getTypes()) {
-                parse(typeDecl, packageName, packageAnnos, atypes, declAnnos);
-            }
+        for (int j = 0; j < index.getNumberOfTypes(i); j++) {
+            parse(getType(i, j), packageName, packageAnnos, atypes, declAnnos);
         }
     }
 
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.Iterator;
@@ -18,6 +19,8 @@ import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
+import org.checkerframework.framework.qual.StubFiles;
+import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.stubparser.ast.CompilationUnit;
@@ -339,6 +342,56 @@ public class StubUtil {
         }
     }
 
+    /**
+     * Returns the stub paths of {@code checker} besides jdk.astub and flow.astub, in the order in
+     * which they are applied: those listed in the {@link StubFiles} annotation of the checker, in
+     * the "stubs" system property, in the "stubs" environment variable, and in the "stubs" option.
+     * A path is a stub file, a directory or jar file of stub files, or a resource of the checker.
+     */
+    public static List<String> getStubPaths(SourceChecker checker) {
+        List<String> allStubFiles = new ArrayList<>();
+
+        // 3. Stub files listed in @Stubfiles annotation on the checker
+        StubFiles stubFilesAnnotation = checker.getClass().getAnnotation(StubFiles.class);
+        if (stubFilesAnnotation != null) {
+            Collections.addAll(allStubFiles, stubFilesAnnotation.value());
+        }
+
+        // 4. Stub files provide via stubs system property
+        String stubsProperty = System.getProperty("stubs");
+        if (stubsProperty != null) {
+            Collections.addAll(allStubFiles, stubsProperty.split(File.pathSeparator));
+        }
+
+        // 5. Stub files provide via stubs environment variable
+        String stubEnvVar = System.getenv("stubs");
+        if (stubEnvVar != null) {
+            Collections.addAll(allStubFiles, stubEnvVar.split(File.pathSeparator));
+        }
+
+        // 6. Stub files provide via stubs option
+        String stubsOption = checker.getOption("stubs");
+        if (stubsOption != null) {
+            Collections.addAll(allStubFiles, stubsOption.split(File.pathSeparator));
+        }
+
+        return allStubFiles;
+    }
+
+    /**
+     * Returns the stub files at {@code stubPath}, which is one of the {@link #getStubPaths}. When
+     * running in jtreg, the path is relative to the test sources.
+     */
+    public static List<StubResource> findStubFiles(String stubPath) {
+        // Handle case when running in jtreg
+        String base = System.getProperty("test.src");
+        String stubPathFull = stubPath;
+        if (base != null) {
+            stubPathFull = base + "/" + stubPath;
+        }
+        return allStubFiles(stubPathFull);
+    }
+
     public static List<StubResource> allStubFiles(String stub) {
         List<StubResource> resources = new ArrayList<StubResource>();
         File stubFile = new File(stub);
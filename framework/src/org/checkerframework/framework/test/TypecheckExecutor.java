@@ -1,9 +1,12 @@
 package org.checkerframework.framework.test;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
@@ -18,6 +21,71 @@ public class TypecheckExecutor {
 
     public TypecheckExecutor() {}
 
+    /** The maximal number of file managers in {@link #fileManagers}. */
+    private static final int MAX_FILE_MANAGERS = 4;
+
+    /**
+     * The file managers of previous compilations in this JVM, by their options; see {@link
+     * #fileManagerKey}. A file manager caches the contents of the jar files on the class path and
+     * the boot class path, which every test compilation would otherwise read again. A file manager
+     * also remembers the options that it was given, so it is only reused for compilations with the
+     * same options. Access is synchronized on the map, and each compilation synchronizes on its
+     * file manager.
+     */
+    private static final Map<List<String>, StandardJavaFileManager> fileManagers =
+            new LinkedHashMap<List<String>, StandardJavaFileManager>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<List<String>, StandardJavaFileManager> eldest) {
+                    if (size() <= MAX_FILE_MANAGERS) {
+                        return false;
+                    }
+                    StandardJavaFileManager fileManager = eldest.getValue();
+                    synchronized (fileManager) {
+                        try {
+                            fileManager.close();
+                        } catch (IOException e) {
+                            // Nothing to do; the file manager is not used any more.
+                        }
+                    }
+                    return true;
+                }
+            };
+
+    /**
+     * Returns the key of the file manager for a compilation with the given options. The output
+     * directory and the source path differ between test directories; since each compilation that
+     * passes them sets them again, only their presence is part of the key.
+     */
+    private static List<String> fileManagerKey(List<String> options) {
+        List<String> key = new ArrayList<String>(options.size());
+        for (int i = 0; i < options.size(); i++) {
+            String option = options.get(i);
+            key.add(option);
+            if ((option.equals("-d") || option.equals("-sourcepath")) && i + 1 < options.size()) {
+                key.add("");
+                i++;
+            }
+        }
+        return key;
+    }
+
+    /** Returns a file manager for a compilation with the given options, reusing one if possible. */
+    private static StandardJavaFileManager getFileManager(
+            JavaCompiler compiler, List<String> options) {
+        List<String> key = fileManagerKey(options);
+        synchronized (fileManagers) {
+            StandardJavaFileManager fileManager = fileManagers.get(key);
+            if (fileManager == null) {
+                fileManager = compiler.getStandardFileManager(null, null, null);
+                fileManagers.put(key, fileManager);
+            }
+            return fileManager;
+        }
+    }
+
     /** Runs a typechecking test using the given configuration and returns the test result */
     public TypecheckResult runTest(TestConfiguration configuration) {
         CompilationResult result = compile(configuration);
@@ -35,10 +103,6 @@ public class TypecheckExecutor {
         DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
 
         JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
-        Iterable<? extends JavaFileObject> javaFiles =
-                fileManager.getJavaFileObjects(
-                        configuration.getTestSourceFiles().toArray(new File[] {}));
 
         // Even though the method compiler.getTask takes a list of processors, it fails if processors are passed this way
         // with the message:
@@ -69,22 +133,31 @@ public class TypecheckExecutor {
                             + PluginUtil.join(" ", configuration.getTestSourceFiles()));
         }
 
-        JavaCompiler.CompilationTask task =
-                compiler.getTask(
-                        javacOutput,
-                        fileManager,
-                        diagnostics,
-                        options,
-                        new ArrayList<String>(),
-                        javaFiles);
-
-        /*
-         * In Eclipse, std out and std err for multiple tests appear as one
-         * long stream. When selecting a specific failed test, one sees the
-         * expected/unexpected messages, but not the std out/err messages from
-         * that particular test. Can we improve this somehow?
-         */
-        final Boolean compiledWithoutError = task.call();
+        StandardJavaFileManager fileManager = getFileManager(compiler, options);
+        Iterable<? extends JavaFileObject> javaFiles;
+        final Boolean compiledWithoutError;
+        synchronized (fileManager) {
+            javaFiles =
+                    fileManager.getJavaFileObjects(
+                            configuration.getTestSourceFiles().toArray(new File[] {}));
+
+            JavaCompiler.CompilationTask task =
+                    compiler.getTask(
+                            javacOutput,
+                            fileManager,
+                            diagnostics,
+                            options,
+                            new ArrayList<String>(),
+                            javaFiles);
+
+            /*
+             * In Eclipse, std out and std err for multiple tests appear as one
+             * long stream. When selecting a specific failed test, one sees the
+             * expected/unexpected messages, but not the std out/err messages from
+             * that particular test. Can we improve this somehow?
+             */
+            compiledWithoutError = task.call();
+        }
         javacOutput.flush();
         return new CompilationResult(
                 compiledWithoutError,
@@ -79,9 +79,9 @@ import org.checkerframework.framework.qual.FromStubFile;
 import org.checkerframework.framework.qual.InheritedAnnotation;
 import org.checkerframework.framework.qual.PolyAll;
 import org.checkerframework.framework.qual.PolymorphicQualifier;
-import org.checkerframework.framework.qual.StubFiles;
 import org.checkerframework.framework.qual.SubtypeOf;
 import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.stub.StubIndex;
 import org.checkerframework.framework.stub.StubParser;
 import org.checkerframework.framework.stub.StubResource;
 import org.checkerframework.framework.stub.StubUtil;
@@ -94,6 +94,7 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedPrimitiv
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
+import org.checkerframework.framework.type.visitor.SimpleAnnotatedTypeScanner;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.AnnotationFormatter;
 import org.checkerframework.framework.util.CFContext;
@@ -101,11 +102,13 @@ import org.checkerframework.framework.util.DefaultAnnotationFormatter;
 import org.checkerframework.framework.util.GraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
+import org.checkerframework.framework.util.PhaseProfiler;
 import org.checkerframework.framework.util.TreePathCacher;
 import org.checkerframework.framework.util.typeinference.DefaultTypeArgumentInference;
 import org.checkerframework.framework.util.typeinference.TypeArgumentInference;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BoundedCache;
 import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
@@ -222,6 +225,22 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // Not final, because it is assigned in postInit().
     private Map<String, Set<AnnotationMirror>> declAnnosFromStubFiles;
 
+    /**
+     * The parsers of the stub files whose type declarations are applied on demand, in the order in
+     * which the stub files are read; null if all stub files are applied eagerly. See {@link
+     * #applyStubTypes(Element)}.
+     */
+    private List<StubParser> lazyStubParsers;
+
+    /** The names of the types declared in {@link #lazyStubParsers} that are not yet applied. */
+    private Set<String> unappliedStubTypes;
+
+    /**
+     * True while type declarations from stub files are being applied. In that time, the stub files
+     * are treated as not read yet, as while {@link #parseStubFiles} runs.
+     */
+    private boolean applyingStubTypes = false;
+
     /**
      * A cache used to store elements whose declaration annotations have already been stored by
      * calling the method {@link #getDeclAnnotations(Element)}.
@@ -284,6 +303,15 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      */
     public boolean shouldCache;
 
+    /**
+     * Number of lookups answered from {@link #classAndMethodTreeCache}, {@link #fromTreeCache} or
+     * {@link #elementCache}. Every such hit returns a deep copy of the cached type.
+     */
+    private long cacheHits;
+
+    /** Number of types stored in the caches; each store makes a deep copy of the type. */
+    private long cacheStores;
+
     /** Size of LRU cache if one isn't specified using the atfCacheSize option. */
     private static final int DEFAULT_CACHE_SIZE = 300;
 
@@ -339,10 +367,27 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         this.shouldCache = !checker.hasOption("atfDoNotCache");
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            this.classAndMethodTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementToTreeCache = CollectionUtils.createLRUCache(cacheSize);
+            String name = getClass().getSimpleName();
+            // With atfCacheWeight, the type caches are bounded by the total size of the cached
+            // types rather than by their number.
+            long typeCacheWeight = cacheSize;
+            TypeSizeWeigher weigher = null;
+            if (checker.hasOption("atfCacheWeight")) {
+                typeCacheWeight = getCacheWeight();
+                weigher = new TypeSizeWeigher();
+            }
+            // With atfCacheSegmented, types that are read repeatedly are protected from
+            // eviction by types that are read only once.
+            boolean segmented = checker.hasOption("atfCacheSegmented");
+            this.classAndMethodTreeCache =
+                    createTypeCache(
+                            name + ".classAndMethodTreeCache", typeCacheWeight, weigher, segmented);
+            this.fromTreeCache =
+                    createTypeCache(name + ".fromTreeCache", typeCacheWeight, weigher, segmented);
+            this.elementCache =
+                    createTypeCache(name + ".elementCache", typeCacheWeight, weigher, segmented);
+            this.elementToTreeCache =
+                    CollectionUtils.createLRUCache(name + ".elementToTreeCache", cacheSize);
         } else {
             this.classAndMethodTreeCache = null;
             this.fromTreeCache = null;
@@ -471,7 +516,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         initilizeReflectionResolution();
 
         if (this.getClass().equals(AnnotatedTypeFactory.class)) {
-            this.parseStubFiles();
+            checker.getProfiler().start(PhaseProfiler.Phase.STUB_PARSING);
+            try {
+                this.parseStubFiles();
+            } finally {
+                checker.getProfiler().stop(PhaseProfiler.Phase.STUB_PARSING);
+            }
         }
     }
 
@@ -506,6 +556,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         elementToTreeCache.clear();
         fromTreeCache.clear();
         classAndMethodTreeCache.clear();
+        if (typeHierarchy instanceof DefaultTypeHierarchy) {
+            ((DefaultTypeHierarchy) typeHierarchy).clearCache();
+        }
 
         // There is no need to clear the following cache, it is limited by cache size and it
         // contents won't change between compilation units.
@@ -870,7 +923,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      */
     public final Set<Class<? extends Annotation>> getSupportedTypeQualifiers() {
         if (this.supportedQuals.isEmpty()) {
-            supportedQuals.addAll(createSupportedTypeQualifiers());
+            checker.getProfiler().start(PhaseProfiler.Phase.ANNOTATION_LOADING);
+            try {
+                supportedQuals.addAll(createSupportedTypeQualifiers());
+            } finally {
+                checker.getProfiler().stop(PhaseProfiler.Phase.ANNOTATION_LOADING);
+            }
             checkSupportedQuals();
         }
         return Collections.unmodifiableSet(supportedQuals);
@@ -883,6 +941,81 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     /** Mapping from a Tree to its TreePath */
     private final TreePathCacher treePathCache = new TreePathCacher();
 
+    /**
+     * Print statistics about the type caches of this factory: how often a cached type was handed
+     * out and how often a type was stored. Both operations make a deep copy.
+     */
+    public void printCacheStatistics() {
+        System.out.println(
+                getClass().getSimpleName()
+                        + " type caches: "
+                        + cacheHits
+                        + " hits, "
+                        + cacheStores
+                        + " stores, "
+                        + (cacheHits + cacheStores)
+                        + " deep copies");
+    }
+
+    /**
+     * Returns the maximal total weight of each type cache, supplied to the checker via the
+     * atfCacheWeight option.
+     *
+     * @return cache weight passed as argument to checker
+     */
+    private long getCacheWeight() {
+        String option = checker.getOption("atfCacheWeight");
+        try {
+            return Long.valueOf(option);
+        } catch (NumberFormatException ex) {
+            ErrorReporter.errorAbort("atfCacheWeight was not an integer: " + option);
+            return 0; // dead code
+        }
+    }
+
+    /**
+     * Creates a type cache whose statistics are reported by the resourceStats option.
+     *
+     * @param name the name of the cache in statistics
+     * @param maxWeight the maximal total weight of the cached types
+     * @param weigher the weigher for cached types, or {@code null} to bound the number of types
+     * @param segmented whether to use a segmented LRU policy instead of evicting the types that
+     *     were stored first
+     * @return a new cache
+     */
+    private static <K> Map<K, AnnotatedTypeMirror> createTypeCache(
+            String name, long maxWeight, /*@Nullable*/ TypeSizeWeigher weigher, boolean segmented) {
+        if (segmented) {
+            return CollectionUtils.createSegmentedLRUCache(name, maxWeight, weigher);
+        } else {
+            return CollectionUtils.createLRUCache(name, maxWeight, weigher);
+        }
+    }
+
+    /**
+     * Weighs a cached type by the number of types it is composed of, as an approximation of its
+     * memory footprint.
+     */
+    private static class TypeSizeWeigher extends SimpleAnnotatedTypeScanner<Integer, Void>
+            implements BoundedCache.Weigher<Object, AnnotatedTypeMirror> {
+
+        @Override
+        public int weigh(Object key, AnnotatedTypeMirror type) {
+            Integer size = visit(type);
+            return size == null ? 1 : size;
+        }
+
+        @Override
+        protected Integer defaultAction(AnnotatedTypeMirror type, Void p) {
+            return 1;
+        }
+
+        @Override
+        protected Integer reduce(Integer r1, Integer r2) {
+            return (r1 == null ? 0 : r1) + (r2 == null ? 0 : r2);
+        }
+    }
+
     /**
      * Returns the int supplied to the checker via the atfCacheSize option or the default cache
      * size.
@@ -945,8 +1078,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             ErrorReporter.errorAbort("AnnotatedTypeFactory.getAnnotatedType: null tree");
             return null; // dead code
         }
-        if (shouldCache && classAndMethodTreeCache.containsKey(tree)) {
-            return classAndMethodTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = classAndMethodTreeCache.get(tree);
+            if (cached != null) {
+                cacheHits++;
+                return cached.deepCopy();
+            }
         }
 
         AnnotatedTypeMirror type;
@@ -969,6 +1106,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         if (TreeUtils.isClassTree(tree) || tree.getKind() == Tree.Kind.METHOD) {
             // Don't cache VARIABLE
             if (shouldCache) {
+                cacheStores++;
                 classAndMethodTreeCache.put(tree, type.deepCopy());
             }
         } else {
@@ -1042,8 +1180,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
      */
     public AnnotatedTypeMirror fromElement(Element elt) {
-        if (shouldCache && elementCache.containsKey(elt)) {
-            return elementCache.get(elt).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = elementCache.get(elt);
+            if (cached != null) {
+                cacheHits++;
+                return cached.deepCopy();
+            }
         }
         if (elt.getKind() == ElementKind.PACKAGE) {
             return toAnnotatedType(elt.asType(), false);
@@ -1056,10 +1198,18 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         // the annotations have to be retrived from the tree so that only explicit annotations are returned.
         Tree decl = declarationFromElement(elt);
 
-        if (decl == null && typesFromStubFiles != null && typesFromStubFiles.containsKey(elt)) {
-            type = typesFromStubFiles.get(elt).deepCopy();
-        } else if (decl == null
-                && (typesFromStubFiles == null || !typesFromStubFiles.containsKey(elt))) {
+        // The types from stub files, or null while they are being read.
+        Map<Element, AnnotatedTypeMirror> stubTypes = null;
+        if (typesFromStubFiles != null && !applyingStubTypes) {
+            stubTypes = typesFromStubFiles;
+            if (decl == null) {
+                applyStubTypes(elt);
+            }
+        }
+
+        if (decl == null && stubTypes != null && stubTypes.containsKey(elt)) {
+            type = stubTypes.get(elt).deepCopy();
+        } else if (decl == null && (stubTypes == null || !stubTypes.containsKey(elt))) {
             type = toAnnotatedType(elt.asType(), ElementUtils.isTypeDeclaration(elt));
             ElementAnnotationApplier.apply(type, elt, this);
 
@@ -1083,21 +1233,58 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             type = null; // dead code
         }
 
-        // Caching is disabled if typesFromStubFiles == null, because calls to this
+        // Caching is disabled if stubTypes == null, because calls to this
         // method before the stub files are fully read can return incorrect
         // results.
-        if (shouldCache && typesFromStubFiles != null) {
+        if (shouldCache && stubTypes != null) {
+            cacheStores++;
             elementCache.put(elt, type.deepCopy());
         }
         return type;
     }
 
+    /**
+     * Apply the declarations from stub files of the types that enclose {@code elt}, or that are
+     * {@code elt}, if they have not been applied yet. Every type is applied from all stub files at
+     * once, in the order of {@link #parseStubFiles}, so that the result is the same as if the stub
+     * files had been applied eagerly.
+     */
+    private void applyStubTypes(Element elt) {
+        if (unappliedStubTypes == null || unappliedStubTypes.isEmpty()) {
+            return;
+        }
+        for (Element e = elt; e != null; e = e.getEnclosingElement()) {
+            if (e.getKind() == ElementKind.PACKAGE) {
+                break;
+            }
+            if (!(e instanceof TypeElement)) {
+                continue;
+            }
+            // A nested type may be declared as "Outer$Inner" at the top level of a stub file.
+            String typeName = ((TypeElement) e).getQualifiedName().toString();
+            if (!unappliedStubTypes.remove(typeName)) {
+                continue;
+            }
+            checker.getProfiler().start(PhaseProfiler.Phase.STUB_PARSING);
+            applyingStubTypes = true;
+            try {
+                for (StubParser stubParser : lazyStubParsers) {
+                    stubParser.parseTypeDeclarations(
+                            typeName, typesFromStubFiles, declAnnosFromStubFiles);
+                }
+            } finally {
+                applyingStubTypes = false;
+                checker.getProfiler().stop(PhaseProfiler.Phase.STUB_PARSING);
+            }
+        }
+    }
+
     /**
      * Adds @FromByteCode to methods, constructors, and fields declared in class files that are not
      * already annotated with @FromStubFile
      */
     private void addFromByteCode(Element elt) {
-        if (declAnnosFromStubFiles == null) { // || trees.getTree(elt) != null) {
+        if (declAnnosFromStubFiles == null || applyingStubTypes) {
             // Parsing stub files, don't add @FromByteCode
             return;
         }
@@ -1150,12 +1337,17 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                             + tree);
             return null; // dead code
         }
-        if (shouldCache && fromTreeCache.containsKey(tree)) {
-            return fromTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromTreeCache.get(tree);
+            if (cached != null) {
+                cacheHits++;
+                return cached.deepCopy();
+            }
         }
         AnnotatedTypeMirror result = TypeFromTree.fromMember(this, tree);
         annotateInheritedFromClass(result);
         if (shouldCache) {
+            cacheStores++;
             fromTreeCache.put(tree, result.deepCopy());
         }
         return result;
@@ -1178,8 +1370,12 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @see TypeFromExpressionVisitor
      */
     private AnnotatedTypeMirror fromExpression(ExpressionTree tree) {
-        if (shouldCache && fromTreeCache.containsKey(tree)) {
-            return fromTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromTreeCache.get(tree);
+            if (cached != null) {
+                cacheHits++;
+                return cached.deepCopy();
+            }
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromExpression(this, tree);
@@ -1187,6 +1383,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         annotateInheritedFromClass(result);
 
         if (shouldCache) {
+            cacheStores++;
             fromTreeCache.put(tree, result.deepCopy());
         }
         return result;
@@ -1207,14 +1404,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return the (partially) annotated type of the type in the AST
      */
     /*package private*/ final AnnotatedTypeMirror fromTypeTree(Tree tree) {
-        if (shouldCache && fromTreeCache.containsKey(tree)) {
-            return fromTreeCache.get(tree).deepCopy();
+        if (shouldCache) {
+            AnnotatedTypeMirror cached = fromTreeCache.get(tree);
+            if (cached != null) {
+                cacheHits++;
+                return cached.deepCopy();
+            }
         }
 
         AnnotatedTypeMirror result = TypeFromTree.fromTypeTree(this, tree);
 
         annotateInheritedFromClass(result);
         if (shouldCache) {
+            cacheStores++;
             fromTreeCache.put(tree, result.deepCopy());
         }
         return result;
@@ -2611,6 +2813,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * <p>If a type is annotated with a qualifier from the same hierarchy in more than one stub
      * file, the qualifier in the last stub file is applied.
      *
+     * <p>Stub files that are resources of the checker are read from their precompiled index, if
+     * there is one; see {@link StubIndex}. Only package declarations are applied here; the
+     * declarations of a type and its members are applied when they are first used, unless one of
+     * the stub debugging options is given.
+     *
      * <p>Sets typesFromStubFiles and declAnnosFromStubFiles by side effect, just before returning.
      */
     protected void parseStubFiles() {
@@ -2623,13 +2830,28 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         Map<String, Set<AnnotationMirror>> declAnnosFromStubFiles =
                 new HashMap<String, Set<AnnotationMirror>>();
 
+        // The stub file warnings and debugging output are about all declarations, so apply
+        // everything eagerly if they are requested.
+        if (!checker.hasOption("stubWarnIfNotFound")
+                && !checker.hasOption("stubWarnIfOverwritesBytecode")
+                && !checker.hasOption("stubDebug")) {
+            lazyStubParsers = new ArrayList<StubParser>();
+            unappliedStubTypes = new HashSet<String>();
+        }
+
         // 1. jdk.astub
         if (!checker.hasOption("ignorejdkastub")) {
             InputStream in = null;
             in = checker.getClass().getResourceAsStream("jdk.astub");
             if (in != null) {
-                StubParser stubParser = new StubParser("jdk.astub", in, this, processingEnv);
-                stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                StubParser stubParser =
+                        new StubParser(
+                                "jdk.astub",
+                                in,
+                                getStubIndex(checker.getClass(), "jdk.astub"),
+                                this,
+                                processingEnv);
+                applyStubFile(stubParser, typesFromStubFiles, declAnnosFromStubFiles);
             }
         }
 
@@ -2637,37 +2859,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         // stub file for type-system independent annotations
         InputStream input = BaseTypeChecker.class.getResourceAsStream("flow.astub");
         if (input != null) {
-            StubParser stubParser = new StubParser("flow.astub", input, this, processingEnv);
-            stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
-        }
-
-        // Stub files specified via stubs compiler option, stubs system property,
-        // stubs env. variable, or @Stubfiles
-        List<String> allStubFiles = new ArrayList<>();
-
-        // 3. Stub files listed in @Stubfiles annotation on the checker
-        StubFiles stubFilesAnnotation = checker.getClass().getAnnotation(StubFiles.class);
-        if (stubFilesAnnotation != null) {
-            Collections.addAll(allStubFiles, stubFilesAnnotation.value());
+            StubParser stubParser =
+                    new StubParser(
+                            "flow.astub",
+                            input,
+                            getStubIndex(BaseTypeChecker.class, "flow.astub"),
+                            this,
+                            processingEnv);
+            applyStubFile(stubParser, typesFromStubFiles, declAnnosFromStubFiles);
         }
 
-        // 4. Stub files provide via stubs system property
-        String stubsProperty = System.getProperty("stubs");
-        if (stubsProperty != null) {
-            Collections.addAll(allStubFiles, stubsProperty.split(File.pathSeparator));
-        }
-
-        // 5. Stub files provide via stubs environment variable
-        String stubEnvVar = System.getenv("stubs");
-        if (stubEnvVar != null) {
-            Collections.addAll(allStubFiles, stubEnvVar.split(File.pathSeparator));
-        }
-
-        // 6. Stub files provide via stubs option
-        String stubsOption = checker.getOption("stubs");
-        if (stubsOption != null) {
-            Collections.addAll(allStubFiles, stubsOption.split(File.pathSeparator));
-        }
+        // 3.-6. Stub files specified via @StubFiles, stubs system property,
+        // stubs env. variable, or stubs compiler option
+        List<String> allStubFiles = StubUtil.getStubPaths(checker);
 
         if (allStubFiles.isEmpty()) {
             this.typesFromStubFiles = typesFromStubFiles;
@@ -2681,19 +2885,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             if (stubPath == null || stubPath.isEmpty()) {
                 continue;
             }
-            // Handle case when running in jtreg
-            String base = System.getProperty("test.src");
-            String stubPathFull = stubPath;
-            if (base != null) {
-                stubPathFull = base + "/" + stubPath;
-            }
-            List<StubResource> stubs = StubUtil.allStubFiles(stubPathFull);
+            List<StubResource> stubs = StubUtil.findStubFiles(stubPath);
             if (stubs.size() == 0) {
                 InputStream in = null;
                 in = checker.getClass().getResourceAsStream(stubPath);
                 if (in != null) {
-                    StubParser stubParser = new StubParser(stubPath, in, this, processingEnv);
-                    stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                    StubParser stubParser =
+                            new StubParser(
+                                    stubPath,
+                                    in,
+                                    getStubIndex(checker.getClass(), stubPath),
+                                    this,
+                                    processingEnv);
+                    applyStubFile(stubParser, typesFromStubFiles, declAnnosFromStubFiles);
                     // We could handle the stubPath -> continue.
                     continue;
                 }
@@ -2717,7 +2921,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                 }
                 StubParser stubParser =
                         new StubParser(resource.getDescription(), stubStream, this, processingEnv);
-                stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                applyStubFile(stubParser, typesFromStubFiles, declAnnosFromStubFiles);
             }
         }
 
@@ -2725,6 +2929,35 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         this.declAnnosFromStubFiles = declAnnosFromStubFiles;
     }
 
+    /**
+     * Returns the precompiled index of the stub file {@code name}, a resource of {@code cls}, or
+     * null if there is none. The index is only used if stub files are applied on demand, because
+     * parsing each declaration of a stub file separately takes longer than parsing it at once.
+     */
+    private /*@Nullable*/ InputStream getStubIndex(Class<?> cls, String name) {
+        if (lazyStubParsers == null) {
+            return null;
+        }
+        return cls.getResourceAsStream(name + StubIndex.SUFFIX);
+    }
+
+    /**
+     * Apply the package declarations of a stub file, and either apply its type declarations too,
+     * or record them to be applied on demand by {@link #applyStubTypes(Element)}.
+     */
+    private void applyStubFile(
+            StubParser stubParser,
+            Map<Element, AnnotatedTypeMirror> typesFromStubFiles,
+            Map<String, Set<AnnotationMirror>> declAnnosFromStubFiles) {
+        if (lazyStubParsers == null) {
+            stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+        } else {
+            stubParser.parsePackages(typesFromStubFiles, declAnnosFromStubFiles);
+            lazyStubParsers.add(stubParser);
+            unappliedStubTypes.addAll(stubParser.getTypeNames());
+        }
+    }
+
     /**
      * Returns the actual annotation mirror used to annotate this element, whose name equals the
      * passed annotation class, if one exists, or null otherwise.
@@ -2840,7 +3073,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         // Retrieving the annotations from the element.
         results.addAll(elt.getAnnotationMirrors());
         // If declAnnosFromStubFiles == null, return the annotations in the element.
-        if (declAnnosFromStubFiles != null) {
+        if (declAnnosFromStubFiles != null && !applyingStubTypes) {
+            applyStubTypes(elt);
+
             // Adding @FromByteCode annotation to declAnnosFromStubFiles entry with key
             // elt, if elt is from bytecode.
             addFromByteCode(elt);
@@ -142,7 +142,9 @@ public abstract class AnnotatedTypeMirror {
     // the class name of Annotation instead.
     // Caution: Assumes that a type can have at most one AnnotationMirror for
     // any Annotation type. JSR308 is pushing to have this change.
-    private final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+    // Ordered like AnnotationUtils.createAnnotationSet(), but array-backed, because almost every
+    // type has only one annotation per qualifier hierarchy.
+    private final Set<AnnotationMirror> annotations = new SmallAnnotationSet();
 
     /** The explicitly written annotations on this type. */
     // TODO: use this to cache the result once computed? For generic types?
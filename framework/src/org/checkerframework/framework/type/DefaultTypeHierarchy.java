@@ -3,11 +3,16 @@ package org.checkerframework.framework.type;
 import static org.checkerframework.framework.util.AnnotatedTypes.isDeclarationOfJavaLangEnum;
 import static org.checkerframework.framework.util.AnnotatedTypes.isEnum;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.TypeElement;
@@ -26,11 +31,14 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVari
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedUnionType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
 import org.checkerframework.framework.type.visitor.AbstractAtmComboVisitor;
+import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
 import org.checkerframework.framework.type.visitor.VisitHistory;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.AtmCombo;
 import org.checkerframework.framework.util.PluginUtil;
 import org.checkerframework.framework.util.TypeArgumentMapper;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.Pair;
@@ -116,6 +124,21 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
     // passing annotations to qualifierHierarchy.
     protected AnnotationMirror currentTop;
 
+    /** Size of the subtype cache. */
+    private static final int SUBTYPE_CACHE_SIZE = 1000;
+
+    /**
+     * Results of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror, AnnotationMirror)},
+     * keyed by the hierarchy and the structure of the two types. The same judgment, e.g. whether
+     * {@code List<@NonNull String>} is a subtype of {@code Collection<? extends @Nullable Object>},
+     * is typically needed at many assignments and method invocations. Null if caching is disabled
+     * by the atfDoNotCache option. Cleared for every compilation unit, see {@link #clearCache()}.
+     */
+    private final /*@Nullable*/ Map<SubtypeQuery, Boolean> subtypeCache;
+
+    /** Decides whether the result of a subtype check may be stored in {@link #subtypeCache}. */
+    private final UncacheableTypeScanner uncacheableTypeScanner = new UncacheableTypeScanner();
+
     public DefaultTypeHierarchy(
             final BaseTypeChecker checker,
             final QualifierHierarchy qualifierHierarchy,
@@ -146,6 +169,24 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
         this.ignoreRawTypes = ignoreRawTypes;
         this.invariantArrayComponents = invariantArrayComponents;
         this.covariantTypeArgs = covariantTypeArgs;
+
+        if (checker.hasOption("atfDoNotCache")) {
+            this.subtypeCache = null;
+        } else {
+            this.subtypeCache =
+                    CollectionUtils.createLRUCache(
+                            getClass().getSimpleName() + ".subtypeCache", SUBTYPE_CACHE_SIZE);
+        }
+    }
+
+    /**
+     * Forget all cached subtype judgments. Called when the compilation unit changes, because the
+     * cached types refer to the trees and elements of the previous compilation unit.
+     */
+    public void clearCache() {
+        if (subtypeCache != null) {
+            subtypeCache.clear();
+        }
     }
 
     /**
@@ -181,7 +222,115 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
             final AnnotatedTypeMirror supertype,
             final AnnotationMirror top) {
         currentTop = top;
-        return isSubtype(subtype, supertype, new VisitHistory());
+        if (subtypeCache == null
+                || uncacheableTypeScanner.visit(subtype)
+                || uncacheableTypeScanner.visit(supertype)) {
+            return isSubtype(subtype, supertype, new VisitHistory());
+        }
+
+        SubtypeQuery query = new SubtypeQuery(top, subtype, supertype);
+        Boolean result = subtypeCache.get(query);
+        if (result == null) {
+            // Copy the types before the check, in case it or a later caller modifies them.
+            SubtypeQuery key = query.deepCopy();
+            result = isSubtype(subtype, supertype, new VisitHistory());
+            subtypeCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * A key of {@link #subtypeCache}. Types are compared structurally, using {@link
+     * AnnotatedTypeMirror#equals} and {@link AnnotatedTypeMirror#hashCode}, i.e. {@link
+     * EqualityAtmComparer} and {@link HashcodeAtmVisitor}.
+     */
+    private static final class SubtypeQuery {
+        private final AnnotationMirror top;
+        private final AnnotatedTypeMirror subtype;
+        private final AnnotatedTypeMirror supertype;
+        private final int hashCode;
+
+        SubtypeQuery(
+                AnnotationMirror top, AnnotatedTypeMirror subtype, AnnotatedTypeMirror supertype) {
+            this(
+                    top,
+                    subtype,
+                    supertype,
+                    31 * (31 * AnnotationUtils.annotationName(top).hashCode() + subtype.hashCode())
+                            + supertype.hashCode());
+        }
+
+        private SubtypeQuery(
+                AnnotationMirror top,
+                AnnotatedTypeMirror subtype,
+                AnnotatedTypeMirror supertype,
+                int hashCode) {
+            this.top = top;
+            this.subtype = subtype;
+            this.supertype = supertype;
+            this.hashCode = hashCode;
+        }
+
+        /** @return a query on copies of the types, which is unaffected by later changes to them */
+        SubtypeQuery deepCopy() {
+            return new SubtypeQuery(top, subtype.deepCopy(), supertype.deepCopy(), hashCode);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SubtypeQuery)) {
+                return false;
+            }
+            SubtypeQuery other = (SubtypeQuery) o;
+            return hashCode == other.hashCode
+                    && AnnotationUtils.areSame(top, other.top)
+                    && subtype.getKind() == other.subtype.getKind()
+                    && supertype.getKind() == other.supertype.getKind()
+                    && subtype.equals(other.subtype)
+                    && supertype.equals(other.supertype);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Returns true if a type contains a component whose subtype check depends on more than its
+     * underlying type and annotations, which are all that {@link SubtypeQuery} compares: a raw
+     * declared type or an uninferred type argument.
+     */
+    private static class UncacheableTypeScanner extends AnnotatedTypeScanner<Boolean, Void> {
+        @Override
+        protected Boolean scan(AnnotatedTypeMirror type, Void p) {
+            Boolean result = super.scan(type, p);
+            return result != null && result;
+        }
+
+        @Override
+        public Boolean visitDeclared(AnnotatedDeclaredType type, Void p) {
+            if (type.wasRaw()) {
+                return true;
+            }
+            return super.visitDeclared(type, p);
+        }
+
+        @Override
+        public Boolean visitWildcard(AnnotatedWildcardType type, Void p) {
+            if (type.isUninferredTypeArgument()) {
+                return true;
+            }
+            return super.visitWildcard(type, p);
+        }
+
+        @Override
+        protected Boolean reduce(Boolean r1, Boolean r2) {
+            return (r1 != null && r1) || (r2 != null && r2);
+        }
     }
 
     /**
@@ -20,6 +20,7 @@ import com.sun.source.tree.Tree.Kind;
 import com.sun.source.tree.UnaryTree;
 import com.sun.source.tree.VariableTree;
 import java.lang.annotation.Annotation;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -28,7 +29,6 @@ import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -85,6 +85,8 @@ import org.checkerframework.framework.type.typeannotator.ListTypeAnnotator;
 import org.checkerframework.framework.type.typeannotator.PropagationTypeAnnotator;
 import org.checkerframework.framework.type.typeannotator.TypeAnnotator;
 import org.checkerframework.framework.util.AnnotatedTypes;
+import org.checkerframework.framework.util.FlowExpressionParseUtil;
+import org.checkerframework.framework.util.PhaseProfiler;
 import org.checkerframework.framework.util.QualifierPolymorphism;
 import org.checkerframework.framework.util.defaults.QualifierDefaults;
 import org.checkerframework.framework.util.dependenttypes.DependentTypesHelper;
@@ -169,7 +171,7 @@ public abstract class GenericAnnotatedTypeFactory<
         this.everUseFlow = useFlow;
         this.shouldDefaultTypeVarLocals = useFlow;
         this.useFlow = useFlow;
-        this.analyses = new LinkedList<>();
+        this.analyses = new ArrayDeque<>();
         this.scannedClasses = new HashMap<>();
         this.flowResult = null;
         this.regularExitStores = null;
@@ -200,7 +202,12 @@ public abstract class GenericAnnotatedTypeFactory<
 
         this.poly = createQualifierPolymorphism();
 
-        this.parseStubFiles();
+        checker.getProfiler().start(PhaseProfiler.Phase.STUB_PARSING);
+        try {
+            this.parseStubFiles();
+        } finally {
+            checker.getProfiler().stop(PhaseProfiler.Phase.STUB_PARSING);
+        }
     }
 
     /**
@@ -231,12 +238,17 @@ public abstract class GenericAnnotatedTypeFactory<
         super.setRoot(root);
         this.analyses.clear();
         this.scannedClasses.clear();
+        if (this.flowResult != null) {
+            flowStoreCacheHits += flowResult.getStoreCacheHits();
+            flowStoreCacheReplays += flowResult.getStoreCacheReplays();
+        }
         this.flowResult = null;
         this.regularExitStores = null;
         this.methodInvocationStores = null;
         this.returnStatementStores = null;
         this.initializationStore = null;
         this.initializationStaticStore = null;
+        FlowExpressionParseUtil.clearCache();
     }
 
     // **********************************************************************
@@ -699,6 +711,18 @@ public abstract class GenericAnnotatedTypeFactory<
      */
     protected AnalysisResult<Value, Store> flowResult;
 
+    /**
+     * Number of stores kept by the store cache of {@link #flowResult} if the flowStoreCacheSize
+     * option is given without a value.
+     */
+    private static final int DEFAULT_FLOW_STORE_CACHE_SIZE = 10000;
+
+    /** The number of store queries answered from the store caches of previous flow results. */
+    private long flowStoreCacheHits;
+
+    /** The number of blocks that previous flow results analyzed again to answer store queries. */
+    private long flowStoreCacheReplays;
+
     /**
      * A mapping from methods (or other code blocks) to their regular exit store (used to check
      * postconditions).
@@ -785,6 +809,52 @@ public abstract class GenericAnnotatedTypeFactory<
         return flowResult.getFinalLocalValues();
     }
 
+    /**
+     * Returns the int supplied to the checker via the flowStoreCacheSize option, or {@link
+     * #DEFAULT_FLOW_STORE_CACHE_SIZE} if the option is given without a value.
+     *
+     * @return maximal number of stores kept by the store cache of {@link #flowResult}
+     */
+    private int getFlowStoreCacheSize() {
+        String option = checker.getOption("flowStoreCacheSize");
+        if (option == null || option.isEmpty()) {
+            return DEFAULT_FLOW_STORE_CACHE_SIZE;
+        }
+        try {
+            int size = Integer.valueOf(option);
+            if (size <= 0) {
+                ErrorReporter.errorAbort("flowStoreCacheSize must be positive: " + option);
+            }
+            return size;
+        } catch (NumberFormatException ex) {
+            ErrorReporter.errorAbort("flowStoreCacheSize was not an integer: " + option);
+            return 0; // dead code
+        }
+    }
+
+    /**
+     * Print the statistics of the type caches, and how many dataflow store queries were answered
+     * from the store cache and how many blocks were analyzed again to answer them; see the
+     * flowStoreCacheSize option.
+     */
+    @Override
+    public void printCacheStatistics() {
+        super.printCacheStatistics();
+        long hits = flowStoreCacheHits;
+        long replays = flowStoreCacheReplays;
+        if (flowResult != null) {
+            hits += flowResult.getStoreCacheHits();
+            replays += flowResult.getStoreCacheReplays();
+        }
+        System.out.println(
+                getClass().getSimpleName()
+                        + " flow stores: "
+                        + hits
+                        + " cache hits, "
+                        + replays
+                        + " block replays");
+    }
+
     /**
      * Perform a org.checkerframework.dataflow analysis over a single class tree and its nested
      * classes.
@@ -794,6 +864,9 @@ public abstract class GenericAnnotatedTypeFactory<
             regularExitStores = new IdentityHashMap<>();
             returnStatementStores = new IdentityHashMap<>();
             flowResult = new AnalysisResult<>();
+            if (checker.hasOption("flowStoreCacheSize")) {
+                flowResult.enableStoreCache(getFlowStoreCacheSize());
+            }
         }
 
         // no need to scan annotations
@@ -803,7 +876,7 @@ public abstract class GenericAnnotatedTypeFactory<
             return;
         }
 
-        Queue<ClassTree> queue = new LinkedList<>();
+        Queue<ClassTree> queue = new ArrayDeque<>();
         List<Pair<VariableElement, Value>> fieldValues = new ArrayList<>();
         queue.add(classTree);
         while (!queue.isEmpty()) {
@@ -824,7 +897,7 @@ public abstract class GenericAnnotatedTypeFactory<
             initializationStaticStore = null;
             initializationStore = null;
 
-            Queue<Pair<LambdaExpressionTree, Store>> lambdaQueue = new LinkedList<>();
+            Queue<Pair<LambdaExpressionTree, Store>> lambdaQueue = new ArrayDeque<>();
 
             try {
                 List<CFGMethod> methods = new ArrayList<>();
@@ -997,8 +1070,15 @@ public abstract class GenericAnnotatedTypeFactory<
             boolean updateInitializationStore,
             boolean isStatic,
             Store lambdaStore) {
+        PhaseProfiler profiler = checker.getProfiler();
         CFGBuilder builder = new CFCFGBuilder(checker, this);
-        ControlFlowGraph cfg = builder.run(root, processingEnv, ast);
+        ControlFlowGraph cfg;
+        profiler.start(PhaseProfiler.Phase.CFG_CONSTRUCTION);
+        try {
+            cfg = builder.run(root, processingEnv, ast);
+        } finally {
+            profiler.stop(PhaseProfiler.Phase.CFG_CONSTRUCTION);
+        }
         FlowAnalysis newAnalysis = createFlowAnalysis(fieldValues);
         TransferFunction transfer = newAnalysis.getTransferFunction();
         if (emptyStore == null) {
@@ -1018,7 +1098,12 @@ public abstract class GenericAnnotatedTypeFactory<
                 }
             }
         }
-        analyses.getFirst().performAnalysis(cfg);
+        profiler.start(PhaseProfiler.Phase.DATAFLOW);
+        try {
+            analyses.getFirst().performAnalysis(cfg);
+        } finally {
+            profiler.stop(PhaseProfiler.Phase.DATAFLOW);
+        }
         AnalysisResult<Value, Store> result = analyses.getFirst().getResult();
 
         // store result
@@ -1198,7 +1283,12 @@ public abstract class GenericAnnotatedTypeFactory<
 
         treeAnnotator.visit(tree, type);
         typeAnnotator.visit(type, null);
-        defaults.annotate(tree, type);
+        checker.getProfiler().start(PhaseProfiler.Phase.DEFAULTING);
+        try {
+            defaults.annotate(tree, type);
+        } finally {
+            checker.getProfiler().stop(PhaseProfiler.Phase.DEFAULTING);
+        }
 
         if (iUseFlow) {
             Value as;
@@ -1277,7 +1367,12 @@ public abstract class GenericAnnotatedTypeFactory<
     @Override
     public void addComputedTypeAnnotations(Element elt, AnnotatedTypeMirror type) {
         typeAnnotator.visit(type, null);
-        defaults.annotate(elt, type);
+        checker.getProfiler().start(PhaseProfiler.Phase.DEFAULTING);
+        try {
+            defaults.annotate(elt, type);
+        } finally {
+            checker.getProfiler().stop(PhaseProfiler.Phase.DEFAULTING);
+        }
         if (dependentTypesHelper != null) {
             dependentTypesHelper.standardizeVariable(type, elt);
         }
@@ -0,0 +1,158 @@
+package org.checkerframework.framework.type;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * A set of annotations with the same ordering and the same notion of equality as {@link
+ * AnnotationUtils#createAnnotationSet()}, stored in a sorted array.
+ *
+ * <p>The primary annotations of a type are usually one per qualifier hierarchy, so the set is
+ * almost always tiny. Compared to a {@code TreeSet}, this set allocates no tree nodes, and computes
+ * the string representation that the ordering is based on only once per added annotation rather
+ * than twice per comparison. An empty set allocates no arrays.
+ */
+final class SmallAnnotationSet extends AbstractSet<AnnotationMirror> {
+
+    /** The shared arrays of an empty set. */
+    private static final AnnotationMirror[] NO_ANNOTATIONS = new AnnotationMirror[0];
+
+    private static final String[] NO_KEYS = new String[0];
+
+    /** The annotations, sorted by their keys; only the first {@link #size} entries are used. */
+    private AnnotationMirror[] annotations = NO_ANNOTATIONS;
+
+    /** The keys of the annotations: their string representations, as used by the ordering. */
+    private String[] keys = NO_KEYS;
+
+    /** The number of annotations in this set. */
+    private int size = 0;
+
+    /** The number of structural modifications, to detect concurrent modification by iterators. */
+    private int modCount = 0;
+
+    SmallAnnotationSet() {}
+
+    /**
+     * @return the position of {@code key} if present, or {@code -(insertion point) - 1} like
+     *     {@link Arrays#binarySearch}
+     */
+    private int indexOf(String key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(/*@Nullable*/ Object o) {
+        return o instanceof AnnotationMirror && indexOf(o.toString()) >= 0;
+    }
+
+    @Override
+    public boolean add(AnnotationMirror a) {
+        String key = a.toString();
+        int index = indexOf(key);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        if (size == annotations.length) {
+            int capacity = size == 0 ? 2 : size + (size >> 1) + 1;
+            annotations = Arrays.copyOf(annotations, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        System.arraycopy(annotations, index, annotations, index + 1, size - index);
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        annotations[index] = a;
+        keys[index] = key;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(/*@Nullable*/ Object o) {
+        if (!(o instanceof AnnotationMirror)) {
+            return false;
+        }
+        int index = indexOf(o.toString());
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    private void removeAt(int index) {
+        size--;
+        System.arraycopy(annotations, index + 1, annotations, index, size - index);
+        System.arraycopy(keys, index + 1, keys, index, size - index);
+        annotations[size] = null;
+        keys[size] = null;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(annotations, 0, size, null);
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<AnnotationMirror> iterator() {
+        return new Iterator<AnnotationMirror>() {
+            /** The index of the next annotation to return. */
+            private int next = 0;
+
+            /** The index of the annotation returned last, or -1 if it was removed. */
+            private int last = -1;
+
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public AnnotationMirror next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return annotations[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+        };
+    }
+}
@@ -5,9 +5,11 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.Tree.Kind;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -19,6 +21,7 @@ import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 
 /**
@@ -56,6 +59,19 @@ public class ImplicitsTreeAnnotator extends TreeAnnotator {
     private final Map<Class<?>, Set<AnnotationMirror>> treeClasses;
     private final Map<Pattern, Set<AnnotationMirror>> stringPatterns;
 
+    /**
+     * The annotations of string literals, by the value of the literal; an empty set if no pattern
+     * matches. Generated code often repeats the same strings many times.
+     */
+    private final Map<String, Set<? extends AnnotationMirror>> stringLiteralAnnotations;
+
+    /**
+     * The annotations of string literals by the set of patterns they match, given as the indices
+     * of the patterns in {@link #stringPatterns}. There are only few distinct sets, so the greatest
+     * lower bound of each set is computed and verified only once.
+     */
+    private final Map<BitSet, Set<? extends AnnotationMirror>> matchedPatternsAnnotations;
+
     protected final QualifierHierarchy qualHierarchy;
 
     /**
@@ -86,7 +102,12 @@ public class ImplicitsTreeAnnotator extends TreeAnnotator {
         super(atypeFactory);
         this.treeKinds = new EnumMap<Kind, Set<AnnotationMirror>>(Kind.class);
         this.treeClasses = new HashMap<Class<?>, Set<AnnotationMirror>>();
-        this.stringPatterns = new IdentityHashMap<Pattern, Set<AnnotationMirror>>();
+        // Patterns do not override equals, so the keys are compared by identity.
+        this.stringPatterns = new LinkedHashMap<Pattern, Set<AnnotationMirror>>();
+        this.stringLiteralAnnotations =
+                CollectionUtils.<String, Set<? extends AnnotationMirror>>createLRUCache(
+                        "ImplicitsTreeAnnotator.stringLiteralAnnotations", 300);
+        this.matchedPatternsAnnotations = new HashMap<>();
 
         this.qualHierarchy = atypeFactory.getQualifierHierarchy();
 
@@ -196,6 +217,8 @@ public class ImplicitsTreeAnnotator extends TreeAnnotator {
                             + " with "
                             + theQual);
         }
+        stringLiteralAnnotations.clear();
+        matchedPatternsAnnotations.clear();
     }
 
     @Override
@@ -231,43 +254,81 @@ public class ImplicitsTreeAnnotator extends TreeAnnotator {
     @Override
     public Void visitLiteral(LiteralTree tree, AnnotatedTypeMirror type) {
         if (!stringPatterns.isEmpty() && tree.getKind() == Kind.STRING_LITERAL) {
-            List<Set<? extends AnnotationMirror>> matches = new ArrayList<>();
-            List<Set<? extends AnnotationMirror>> nonMatches = new ArrayList<>();
-
             String string = (String) tree.getValue();
-            for (Pattern pattern : stringPatterns.keySet()) {
-                Set<AnnotationMirror> sam = stringPatterns.get(pattern);
-                if (pattern.matcher(string).matches()) {
-                    matches.add(sam);
-                } else {
-                    nonMatches.add(sam);
-                }
+            Set<? extends AnnotationMirror> res = stringLiteralAnnotations.get(string);
+            if (res == null) {
+                res = computeStringLiteralAnnotations(string);
+                stringLiteralAnnotations.put(string, res);
             }
-            Set<? extends AnnotationMirror> res = null;
-            if (!matches.isEmpty()) {
-                res = matches.get(0);
-                for (Set<? extends AnnotationMirror> sam : matches) {
-                    res = qualHierarchy.greatestLowerBounds(res, sam);
-                }
-                // Verify that res is not a subtype of any type in nonMatches
-                for (Set<? extends AnnotationMirror> sam : nonMatches) {
-                    if (qualHierarchy.isSubtype(res, sam)) {
-                        ErrorReporter.errorAbort(
-                                "Bug in @ImplicitFor(stringpatterns=...) in type hierarchy definition: inferred type for \""
-                                        + string
-                                        + "\" is "
-                                        + res
-                                        + " which is a subtype of "
-                                        + sam
-                                        + " but its pattern does not match the string.  matches = "
-                                        + matches
-                                        + "; nonMatches = "
-                                        + nonMatches);
-                    }
-                }
+            if (!res.isEmpty()) {
                 type.addAnnotations(res);
             }
         }
         return super.visitLiteral(tree, type);
     }
+
+    /**
+     * @return the greatest lower bound of the annotations of all patterns that match {@code
+     *     string}, or an empty set if none matches
+     */
+    private Set<? extends AnnotationMirror> computeStringLiteralAnnotations(String string) {
+        BitSet matched = new BitSet();
+        int index = 0;
+        for (Pattern pattern : stringPatterns.keySet()) {
+            if (pattern.matcher(string).matches()) {
+                matched.set(index);
+            }
+            index++;
+        }
+        if (matched.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<? extends AnnotationMirror> res = matchedPatternsAnnotations.get(matched);
+        if (res == null) {
+            res = greatestLowerBoundOfMatches(matched, string);
+            matchedPatternsAnnotations.put(matched, res);
+        }
+        return res;
+    }
+
+    /**
+     * @param matched the indices of the patterns that match {@code string}; not empty
+     * @param string a string, used in the error message
+     * @return the greatest lower bound of the annotations of the matching patterns
+     */
+    private Set<? extends AnnotationMirror> greatestLowerBoundOfMatches(
+            BitSet matched, String string) {
+        List<Set<? extends AnnotationMirror>> matches = new ArrayList<>();
+        List<Set<? extends AnnotationMirror>> nonMatches = new ArrayList<>();
+        int index = 0;
+        for (Set<AnnotationMirror> sam : stringPatterns.values()) {
+            if (matched.get(index)) {
+                matches.add(sam);
+            } else {
+                nonMatches.add(sam);
+            }
+            index++;
+        }
+        Set<? extends AnnotationMirror> res = matches.get(0);
+        for (Set<? extends AnnotationMirror> sam : matches) {
+            res = qualHierarchy.greatestLowerBounds(res, sam);
+        }
+        // Verify that res is not a subtype of any type in nonMatches
+        for (Set<? extends AnnotationMirror> sam : nonMatches) {
+            if (qualHierarchy.isSubtype(res, sam)) {
+                ErrorReporter.errorAbort(
+                        "Bug in @ImplicitFor(stringpatterns=...) in type hierarchy definition: inferred type for \""
+                                + string
+                                + "\" is "
+                                + res
+                                + " which is a subtype of "
+                                + sam
+                                + " but its pattern does not match the string.  matches = "
+                                + matches
+                                + "; nonMatches = "
+                                + nonMatches);
+            }
+        }
+        return res;
+    }
 }
@@ -66,7 +66,9 @@ public class IrrelevantTypeAnnotator extends TypeAnnotator {
             }
         }
         this.allFoundRelevantTypes =
-                Collections.newSetFromMap(CollectionUtils.<TypeMirror, Boolean>createLRUCache(300));
+                Collections.newSetFromMap(
+                        CollectionUtils.<TypeMirror, Boolean>createLRUCache(
+                                "IrrelevantTypeAnnotator.allFoundRelevantTypes", 300));
     }
 
     @Override
@@ -25,6 +25,7 @@ import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.TypesUtils;
@@ -94,57 +95,14 @@ public class AnnotationBuilder {
         }
     }
 
+    /**
+     * Returns the annotation. Equal annotations share one instance; see {@link
+     * AnnotationUtils#intern}.
+     */
     public AnnotationMirror build() {
         assertNotBuilt();
         wasBuilt = true;
-        return new AnnotationMirror() {
-
-            private String toStringVal;
-
-            @Override
-            public DeclaredType getAnnotationType() {
-                return annotationType;
-            }
-
-            @Override
-            public Map<? extends ExecutableElement, ? extends AnnotationValue> getElementValues() {
-                return Collections.unmodifiableMap(elementValues);
-            }
-
-            @SideEffectFree
-            @Override
-            public String toString() {
-                if (toStringVal == null) {
-                    StringBuilder buf = new StringBuilder();
-                    buf.append("@");
-                    buf.append(annotationType);
-                    int len = elementValues.size();
-                    if (len > 0) {
-                        buf.append('(');
-                        boolean first = true;
-                        for (Map.Entry<ExecutableElement, AnnotationValue> pair :
-                                elementValues.entrySet()) {
-                            if (!first) {
-                                buf.append(", ");
-                            }
-                            first = false;
-
-                            String name = pair.getKey().getSimpleName().toString();
-                            if (len > 1 || !name.equals("value")) {
-                                buf.append(name);
-                                buf.append('=');
-                            }
-                            buf.append(pair.getValue());
-                        }
-                        buf.append(')');
-                    }
-                    toStringVal = buf.toString();
-                }
-                return toStringVal;
-
-                // return "@" + annotationType + "(" + elementValues + ")";
-            }
-        };
+        return AnnotationUtils.intern(annotationType, elementValues);
     }
 
     public AnnotationBuilder setValue(CharSequence elementName, AnnotationMirror value) {
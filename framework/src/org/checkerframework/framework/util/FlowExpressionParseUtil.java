@@ -18,7 +18,9 @@ import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.code.Type.ArrayType;
 import com.sun.tools.javac.code.Type.ClassType;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -49,6 +51,7 @@ import org.checkerframework.dataflow.cfg.node.MethodInvocationNode;
 import org.checkerframework.dataflow.cfg.node.Node;
 import org.checkerframework.dataflow.cfg.node.ObjectCreationNode;
 import org.checkerframework.framework.source.Result;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.Pair;
@@ -82,6 +85,10 @@ public class FlowExpressionParseUtil {
     }
 
     // Each of the below patterns is anchored with ^...$.
+    // The parser itself classifies an expression with the methods isNullLiteral, isIntLiteral, ...,
+    // isParentheses below, in that order of precedence. They scan the string once and do not use
+    // these patterns, because the same strings are classified again and again. Each of them accepts
+    // exactly the strings that the corresponding pattern matches.
     /** Matches a parameter */
     protected static final Pattern parameterPattern = anchored(parameterRegex);
     /**
@@ -111,6 +118,32 @@ public class FlowExpressionParseUtil {
     /** Matches an expression contained in matching start and end parentheses */
     protected static final Pattern parenthesesPattern = anchored("\\((.*)\\)");
 
+    /** Size of {@link #receiverCache}. */
+    private static final int RECEIVER_CACHE_SIZE = 500;
+
+    /**
+     * The results of {@link #parse}, keyed by the expression string and everything that its
+     * meaning depends on: the context and the local scope. The same expressions in, e.g.,
+     * {@code @EnsuresNonNull}, {@code @GuardedBy} or {@code @KeyFor} are parsed in the same
+     * context many times while a method is type-checked and analyzed.
+     *
+     * <p>The keys refer to the checker and to trees of the current compilation unit, so the cache
+     * is cleared by {@link #clearCache} whenever a type factory moves to another compilation unit
+     * and whenever a checker is initialized.
+     */
+    private static final Map<ReceiverCacheKey, Receiver> receiverCache =
+            Collections.synchronizedMap(
+                    CollectionUtils.<ReceiverCacheKey, Receiver>createLRUCache(
+                            "FlowExpressionParseUtil.receiverCache", RECEIVER_CACHE_SIZE));
+
+    /**
+     * Forget the results of {@link #parse}, which refer to the trees of a compilation unit and to
+     * the checker that they were parsed for.
+     */
+    public static void clearCache() {
+        receiverCache.clear();
+    }
+
     /**
      * Parse a string and return its representation as a {@link Receiver}, or throw an {@link
      * FlowExpressionParseException}.
@@ -127,14 +160,128 @@ public class FlowExpressionParseUtil {
             boolean useLocalScope)
             throws FlowExpressionParseException {
         context.useLocalScope = useLocalScope;
-        FlowExpressions.Receiver result = parseHelper(expression, context, localScope);
+        ReceiverCacheKey key = new ReceiverCacheKey(expression, context, localScope);
+        FlowExpressions.Receiver result = receiverCache.get(key);
+        if (result != null) {
+            return result;
+        }
+
+        result = parseHelper(expression, context, localScope);
         if (result instanceof ClassName && !expression.endsWith("class")) {
             throw constructParserException(
                     expression, "a class name cannot terminate a flow expression string");
         }
+        receiverCache.put(key.copy(), result);
         return result;
     }
 
+    /**
+     * A key of {@link #receiverCache}. Receivers of the context are compared by {@link
+     * Receiver#equals} and by the identity of their types, because the equality of some receivers,
+     * such as {@link ThisReference}, ignores their type.
+     */
+    private static final class ReceiverCacheKey {
+        private final String expression;
+        private final /*@Nullable*/ Receiver receiver;
+        private final /*@Nullable*/ Receiver outerReceiver;
+        private final /*@Nullable*/ List<Receiver> arguments;
+        private final BaseContext checkerContext;
+        private final boolean parsingMember;
+        private final boolean useLocalScope;
+        /** The leaf of the local scope; it determines the whole path. */
+        private final /*@Nullable*/ Tree scope;
+
+        ReceiverCacheKey(String expression, FlowExpressionContext context, TreePath localScope) {
+            this(
+                    expression,
+                    context.receiver,
+                    context.outerReceiver,
+                    context.arguments,
+                    context.checkerContext,
+                    context.parsingMember,
+                    context.useLocalScope,
+                    localScope == null ? null : localScope.getLeaf());
+        }
+
+        private ReceiverCacheKey(
+                String expression,
+                /*@Nullable*/ Receiver receiver,
+                /*@Nullable*/ Receiver outerReceiver,
+                /*@Nullable*/ List<Receiver> arguments,
+                BaseContext checkerContext,
+                boolean parsingMember,
+                boolean useLocalScope,
+                /*@Nullable*/ Tree scope) {
+            this.expression = expression;
+            this.receiver = receiver;
+            this.outerReceiver = outerReceiver;
+            this.arguments = arguments;
+            this.checkerContext = checkerContext;
+            this.parsingMember = parsingMember;
+            this.useLocalScope = useLocalScope;
+            this.scope = scope;
+        }
+
+        /** @return a key that is not affected by later changes to the argument list */
+        ReceiverCacheKey copy() {
+            return new ReceiverCacheKey(
+                    expression,
+                    receiver,
+                    outerReceiver,
+                    arguments == null ? null : new ArrayList<Receiver>(arguments),
+                    checkerContext,
+                    parsingMember,
+                    useLocalScope,
+                    scope);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ReceiverCacheKey)) {
+                return false;
+            }
+            ReceiverCacheKey other = (ReceiverCacheKey) o;
+            if (!expression.equals(other.expression)
+                    || checkerContext != other.checkerContext
+                    || scope != other.scope
+                    || parsingMember != other.parsingMember
+                    || useLocalScope != other.useLocalScope
+                    || !sameReceiver(receiver, other.receiver)
+                    || !sameReceiver(outerReceiver, other.outerReceiver)) {
+                return false;
+            }
+            if (arguments == null || other.arguments == null) {
+                return arguments == other.arguments;
+            }
+            if (arguments.size() != other.arguments.size()) {
+                return false;
+            }
+            for (int i = 0; i < arguments.size(); i++) {
+                if (!sameReceiver(arguments.get(i), other.arguments.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean sameReceiver(
+                /*@Nullable*/ Receiver r1, /*@Nullable*/ Receiver r2) {
+            if (r1 == null || r2 == null) {
+                return r1 == r2;
+            }
+            return r1.getType() == r2.getType() && r1.equals(r2);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = expression.hashCode();
+            result = 31 * result + (receiver == null ? 0 : receiver.hashCode());
+            result = 31 * result + (arguments == null ? 0 : arguments.hashCode());
+            result = 31 * result + System.identityHashCode(scope);
+            return result;
+        }
+    }
+
     private static FlowExpressions.Receiver parseHelper(
             String expression, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
@@ -172,18 +319,30 @@ public class FlowExpressionParseUtil {
         }
     }
 
+    /** Returns true if {@code s} matches {@code ^([^.]+)\.(.+)$}, a field access. */
     private static boolean isMemberSelect(String s, FlowExpressionContext context) {
-        Matcher dotMatcher = memberselect.matcher(s);
-        return dotMatcher.matches();
+        return splitMemberSelect(s) != null;
+    }
+
+    /**
+     * Splits a field access at its first dot.
+     *
+     * @return the object and the field, or null if {@code s} is not of the form {@code
+     *     ^([^.]+)\.(.+)$}
+     */
+    private static /*@Nullable*/ Pair<String, String> splitMemberSelect(String s) {
+        int dot = s.indexOf('.');
+        if (dot <= 0 || dot == s.length() - 1 || containsLineTerminator(s, dot + 1, s.length())) {
+            return null;
+        }
+        return Pair.of(s.substring(0, dot), s.substring(dot + 1));
     }
 
     private static Receiver parseMemberSelect(
             String s, ProcessingEnvironment env, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        Matcher dotMatcher = memberselect.matcher(s);
-        if (!dotMatcher.matches()) {
-            assert false : "isMemberSelect must be called first";
-        }
+        Pair<String, String> memberSelect = splitMemberSelect(s);
+        assert memberSelect != null : "isMemberSelect must be called first";
         Receiver receiver;
         String memberSelected;
 
@@ -200,8 +359,8 @@ public class FlowExpressionParseUtil {
                         s, "a class cannot terminate a flow expression string");
             }
         } else {
-            String receiverString = dotMatcher.group(1);
-            memberSelected = dotMatcher.group(2);
+            String receiverString = memberSelect.first;
+            memberSelected = memberSelect.second;
             receiver = parseHelper(receiverString, context, path);
         }
 
@@ -224,20 +383,47 @@ public class FlowExpressionParseUtil {
         if (context.parsingMember) {
             return false;
         }
-        Matcher nullMatcher = nullPattern.matcher(s);
-        return nullMatcher.matches();
+        return s.equals("null");
     }
 
     private static Receiver parseNullLiteral(String expression, Types types) {
         return new ValueLiteral(types.getNullType(), (Object) null);
     }
 
+    /** Returns true if {@code s} matches {@code ^[-+]?[1-9][0-9]*$}. */
     private static boolean isIntLiteral(String s, FlowExpressionContext context) {
         if (context.parsingMember) {
             return false;
         }
-        Matcher intMatcher = intPattern.matcher(s);
-        return intMatcher.matches();
+        return integerEnd(s) == s.length();
+    }
+
+    /**
+     * @return the end of the longest prefix of {@code s} that matches {@code [-+]?[1-9][0-9]*}, or
+     *     -1 if there is no such prefix
+     */
+    private static int integerEnd(String s) {
+        int start = 0;
+        if (s.startsWith("-") || s.startsWith("+")) {
+            start = 1;
+        }
+        int end = positiveNumberEnd(s, start);
+        return end == start ? -1 : end;
+    }
+
+    /**
+     * @return the end of the longest substring of {@code s} at {@code start} that matches {@code
+     *     [1-9][0-9]*}, or {@code start} if there is none
+     */
+    private static int positiveNumberEnd(String s, int start) {
+        if (start >= s.length() || s.charAt(start) < '1' || s.charAt(start) > '9') {
+            return start;
+        }
+        int end = start + 1;
+        while (end < s.length() && s.charAt(end) >= '0' && s.charAt(end) <= '9') {
+            end++;
+        }
+        return end;
     }
 
     private static Receiver parseIntLiteral(String s, Types types) {
@@ -245,12 +431,13 @@ public class FlowExpressionParseUtil {
         return new ValueLiteral(types.getPrimitiveType(TypeKind.INT), val);
     }
 
+    /** Returns true if {@code s} matches {@code ^[-+]?[1-9][0-9]*L$}. */
     private static boolean isLongLiteral(String s, FlowExpressionContext context) {
         if (context.parsingMember) {
             return false;
         }
-        Matcher longMatcher = longPattern.matcher(s);
-        return longMatcher.matches();
+        int end = integerEnd(s);
+        return end != -1 && end == s.length() - 1 && s.charAt(end) == 'L';
     }
 
     private static Receiver parseLongLiteral(String s, Types types) {
@@ -260,12 +447,30 @@ public class FlowExpressionParseUtil {
         return new ValueLiteral(types.getPrimitiveType(TypeKind.LONG), val);
     }
 
+    /** Returns true if {@code s} matches {@code ^"(?:[^"\\]|\\.)*"$}. */
+    // Regex can be found at, for example, http://stackoverflow.com/a/481587/173852
     private static boolean isStringLiteral(String s, FlowExpressionContext context) {
         if (context.parsingMember) {
             return false;
         }
-        Matcher stringMatcher = stringPattern.matcher(s);
-        return stringMatcher.matches();
+        if (!s.startsWith("\"")) {
+            return false;
+        }
+        int i = 1;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                return i == s.length() - 1;
+            } else if (c == '\\') {
+                if (i + 1 == s.length() || isLineTerminator(s.charAt(i + 1))) {
+                    return false;
+                }
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        return false;
     }
 
     private static Receiver parseStringLiteral(String s, Types types, Elements elements) {
@@ -280,8 +485,7 @@ public class FlowExpressionParseUtil {
             // Outer.this
             return false;
         }
-        Matcher thisMatcher = thisPattern.matcher(s);
-        return thisMatcher.matches();
+        return s.equals("this");
     }
 
     private static Receiver parseThis(String s, FlowExpressionContext context) {
@@ -297,8 +501,7 @@ public class FlowExpressionParseUtil {
         if (context.parsingMember) {
             return false;
         }
-        Matcher superMatcher = superPattern.matcher(s);
-        return superMatcher.matches();
+        return s.equals("super");
     }
 
     private static Receiver parseSuper(String s, Types types, FlowExpressionContext context)
@@ -324,9 +527,51 @@ public class FlowExpressionParseUtil {
         return new ThisReference(superType);
     }
 
+    /** Returns true if {@code s} matches {@link #identifierRegex}. */
     private static boolean isIdentifier(String s, FlowExpressionContext context) {
-        Matcher identifierMatcher = identifierPattern.matcher(s);
-        return identifierMatcher.matches();
+        return !s.isEmpty() && identifierEnd(s) == s.length();
+    }
+
+    /**
+     * @return the end of the longest prefix of {@code s} that matches {@link #identifierRegex}, or
+     *     0 if there is none
+     */
+    private static int identifierEnd(String s) {
+        if (s.isEmpty() || !isIdentifierChar(s.charAt(0)) || Character.isDigit(s.charAt(0))) {
+            return 0;
+        }
+        int end = 1;
+        while (end < s.length() && isIdentifierChar(s.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /** Returns true if {@code c} matches {@code [a-zA-Z_$0-9]}. */
+    private static boolean isIdentifierChar(char c) {
+        return (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9')
+                || c == '_'
+                || c == '$';
+    }
+
+    /**
+     * Returns true if {@code c} is a line terminator, which the regular expression {@code .} does
+     * not match.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /** Returns true if the substring of {@code s} from {@code start} to {@code end} has one. */
+    private static boolean containsLineTerminator(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (isLineTerminator(s.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static Receiver parseIdentifier(
@@ -405,18 +650,21 @@ public class FlowExpressionParseUtil {
         return new FieldAccess(locationOfField, fieldType, fieldElem);
     }
 
+    /**
+     * Returns true if {@code s} matches {@code ^#([1-9][0-9]*)$}, see {@link #parameterRegex}. Does
+     * not allow "#0" because people reading the code might assume the numbering starts at 0 and
+     * assume that #0 is the first formal parameter.
+     */
     private static boolean isParameter(String s, FlowExpressionContext contex) {
         if (contex.parsingMember) {
             return false;
         }
-        Matcher parameterMatcher = parameterPattern.matcher(s);
-        return parameterMatcher.matches();
+        return s.startsWith("#") && s.length() > 1 && positiveNumberEnd(s, 1) == s.length();
     }
 
     private static Receiver parseParameter(String s, FlowExpressionContext context)
             throws FlowExpressionParseException {
-        Matcher parameterMatcher = parameterPattern.matcher(s);
-        if (!parameterMatcher.matches()) {
+        if (!isParameter(s, context)) {
             return null;
         }
         if (context.arguments == null) {
@@ -424,10 +672,10 @@ public class FlowExpressionParseUtil {
         }
         int idx = -1;
         try {
-            idx = Integer.parseInt(parameterMatcher.group(1));
+            idx = Integer.parseInt(s.substring(1));
         } catch (NumberFormatException e) {
-            // cannot occur by the way the pattern is defined (matches only numbers)
-            assert false;
+            // the parameter number is too large for an int
+            throw constructParserException(s, e);
         }
         if (idx > context.arguments.size()) {
             throw new FlowExpressionParseException(
@@ -436,23 +684,43 @@ public class FlowExpressionParseUtil {
         return context.arguments.get(idx - 1);
     }
 
+    /**
+     * Returns true if {@code s} matches {@code ^(identifierRegex)\((.*)\)$}, a method call. The
+     * method name ends at {@link #identifierEnd}.
+     */
     private static boolean isMethod(String s, FlowExpressionContext contex) {
-        Matcher methodMatcher = methodPattern.matcher(s);
-        return methodMatcher.matches();
+        return splitMethod(s) != null;
+    }
+
+    /**
+     * Splits a method call into the method name and the parameter list.
+     *
+     * @return the method name and the parameter list, or null if {@code s} is not of the form
+     *     {@code ^(identifierRegex)\((.*)\)$}
+     */
+    private static /*@Nullable*/ Pair<String, String> splitMethod(String s) {
+        int nameEnd = identifierEnd(s);
+        if (nameEnd == 0
+                || s.length() <= nameEnd + 1
+                || s.charAt(nameEnd) != '('
+                || !s.endsWith(")")
+                || containsLineTerminator(s, nameEnd + 1, s.length() - 1)) {
+            return null;
+        }
+        return Pair.of(s.substring(0, nameEnd), s.substring(nameEnd + 1, s.length() - 1));
     }
 
     private static Receiver parseMethod(
             String s, FlowExpressionContext context, TreePath path, ProcessingEnvironment env)
             throws FlowExpressionParseException {
-        Matcher methodMatcher = methodPattern.matcher(s);
-
-        if (!methodMatcher.matches()) {
+        Pair<String, String> method = splitMethod(s);
+        if (method == null) {
             return null;
         }
-        String methodName = methodMatcher.group(1);
+        String methodName = method.first;
 
         // parse parameter list
-        String parameterList = methodMatcher.group(2);
+        String parameterList = method.second;
         List<Receiver> parameters =
                 ParameterListParser.parseParameterList(
                         parameterList, true, context.copyAndUseOuterReceiver(), path);
@@ -535,20 +803,37 @@ public class FlowExpressionParseUtil {
         }
     }
 
+    /**
+     * Returns true if {@code s} matches {@code ^(.*)\[(.*)\]$}, an array access. The index
+     * starts after the last '['.
+     */
     private static boolean isArray(String s, FlowExpressionContext context) {
-        Matcher arraymatcher = arrayPattern.matcher(s);
-        return arraymatcher.matches();
+        return splitArray(s) != null;
+    }
+
+    /**
+     * Splits an array access into the array and the index.
+     *
+     * @return the array and the index, or null if {@code s} is not of the form {@code
+     *     ^(.*)\[(.*)\]$}
+     */
+    private static /*@Nullable*/ Pair<String, String> splitArray(String s) {
+        int bracket = s.lastIndexOf('[');
+        if (!s.endsWith("]") || bracket == -1 || containsLineTerminator(s, 0, s.length())) {
+            return null;
+        }
+        return Pair.of(s.substring(0, bracket), s.substring(bracket + 1, s.length() - 1));
     }
 
     private static Receiver parseArray(String s, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        Matcher arraymatcher = arrayPattern.matcher(s);
-        if (!arraymatcher.matches()) {
+        Pair<String, String> array = splitArray(s);
+        if (array == null) {
             return null;
         }
 
-        String receiverStr = arraymatcher.group(1);
-        String indexStr = arraymatcher.group(2);
+        String receiverStr = array.first;
+        String indexStr = array.second;
         Receiver receiver = parseHelper(receiverStr, context, path);
         FlowExpressionContext contextForIndex = context.copyAndUseOuterReceiver();
         Receiver index = parseHelper(indexStr, contextForIndex, path);
@@ -562,18 +847,20 @@ public class FlowExpressionParseUtil {
         return result;
     }
 
+    /** Returns true if {@code s} matches {@code ^\((.*)\)$}. */
     private static boolean isParentheses(String s, FlowExpressionContext contex) {
-        Matcher parenthesesMatcher = parenthesesPattern.matcher(s);
-        return parenthesesMatcher.matches();
+        return s.length() >= 2
+                && s.startsWith("(")
+                && s.endsWith(")")
+                && !containsLineTerminator(s, 1, s.length() - 1);
     }
 
     private static Receiver parseParentheses(String s, FlowExpressionContext context, TreePath path)
             throws FlowExpressionParseException {
-        Matcher parenthesesMatcher = parenthesesPattern.matcher(s);
-        if (!parenthesesMatcher.matches()) {
+        if (!isParentheses(s, context)) {
             return null;
         }
-        String expressionString = parenthesesMatcher.group(1);
+        String expressionString = s.substring(1, s.length() - 1);
         // Do not modify the value of recursiveCall, since a parenthesis match is essentially
         // a match to a no-op and should not semantically affect the parsing.
         return parseHelper(expressionString, context, path);
@@ -606,12 +893,12 @@ public class FlowExpressionParseUtil {
         PackageSymbol packageSymbol = packageSymbolAndRemainingString.first;
         String packageRemainingString = packageSymbolAndRemainingString.second;
 
-        Matcher dotMatcher = memberselect.matcher(packageRemainingString);
+        Pair<String, String> memberSelect = splitMemberSelect(packageRemainingString);
         String classNameString;
         String remainingString;
-        if (dotMatcher.matches()) {
-            classNameString = dotMatcher.group(1);
-            remainingString = dotMatcher.group(2);
+        if (memberSelect != null) {
+            classNameString = memberSelect.first;
+            remainingString = memberSelect.second;
         } else {
             classNameString = packageRemainingString;
             remainingString = null;
@@ -659,16 +946,15 @@ public class FlowExpressionParseUtil {
     private static Pair<PackageSymbol, String> matchPackageNameWithinExpression(
             String expression, Resolver resolver, TreePath path)
             throws FlowExpressionParseException {
-        Matcher dotMatcher = memberselect.matcher(expression);
+        Pair<String, String> memberSelect = splitMemberSelect(expression);
 
         // To proceed past this point, at the minimum the expression must be composed of packageName.className .
-        // Do not remove the call to matches(), otherwise the dotMatcher groups will not be filled in.
-        if (!dotMatcher.matches()) {
+        if (memberSelect == null) {
             return null;
         }
 
-        String packageName = dotMatcher.group(1);
-        String remainingString = dotMatcher.group(2),
+        String packageName = memberSelect.first;
+        String remainingString = memberSelect.second,
                 remainingStringIfPackageMatched = remainingString;
 
         PackageSymbol result = null; // the result of this method call
@@ -693,10 +979,10 @@ public class FlowExpressionParseUtil {
             }
             result = longerResult;
             remainingString = remainingStringIfPackageMatched;
-            dotMatcher = memberselect.matcher(remainingString);
-            if (dotMatcher.matches()) {
-                packageName += "." + dotMatcher.group(1);
-                remainingStringIfPackageMatched = dotMatcher.group(2);
+            memberSelect = splitMemberSelect(remainingString);
+            if (memberSelect != null) {
+                packageName += "." + memberSelect.first;
+                remainingStringIfPackageMatched = memberSelect.second;
             } else {
                 // There are no dots in remainingString, so we are done.
                 // Fail if the whole string represents a package, otherwise return.
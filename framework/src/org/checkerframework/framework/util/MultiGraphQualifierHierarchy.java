@@ -16,6 +16,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.util.ElementFilter;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.framework.qual.PolymorphicQualifier;
@@ -29,6 +30,13 @@ import org.checkerframework.javacutil.ErrorReporter;
  * hierarchies.
  *
  * <p>This class is immutable and can be only created through {@link MultiGraphFactory}.
+ *
+ * <p>If no qualifier of the hierarchy has elements, the hierarchy is also compiled to a dense form:
+ * every qualifier gets an index, the transitive closure of the subtype relation is a bit matrix,
+ * and least upper bounds, greatest lower bounds, tops, and bottoms are memoized in arrays by index.
+ * Then {@link #isSubtype(AnnotationMirror, AnnotationMirror)} is a single bit test. Hierarchies
+ * with qualifiers that have elements, such as {@code @IntVal(1)}, use the maps instead, because
+ * such qualifiers are not determined by their annotation name alone.
  */
 public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
@@ -173,6 +181,30 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
     /** @see MultiGraphQualifierHierarchy.MultiGraphFactory#polyQualifiers */
     protected final Map<AnnotationMirror, AnnotationMirror> polyQualifiers;
 
+    /**
+     * The index of each qualifier in the compiled hierarchy, keyed by annotation name; null if the
+     * hierarchy is not compiled.
+     */
+    private final /*@Nullable*/ Map</*@Interned*/ String, Integer> qualifierIndexes;
+
+    /** The qualifiers of the compiled hierarchy, by index. */
+    private final AnnotationMirror[] qualifiersByIndex;
+
+    /**
+     * Bit {@code j} of row {@code i} is set iff qualifier {@code i} is a subtype of qualifier
+     * {@code j}. Each row holds one bit per qualifier, in words of 64 bits.
+     */
+    private final long[][] subtypeMatrix;
+
+    /**
+     * The memoized least upper bounds and greatest lower bounds, by index of the arguments: 0 if
+     * not computed yet, -1 if there is none, and otherwise 1 + the index of the result.
+     */
+    private final int[][] lubTable, glbTable;
+
+    /** The memoized top and bottom qualifiers, by index; null if not computed yet. */
+    private final AnnotationMirror[] topByIndex, bottomByIndex;
+
     public MultiGraphQualifierHierarchy(MultiGraphFactory f) {
         this(f, (Object[]) null);
     }
@@ -206,6 +238,84 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
         this.supertypesMap = Collections.unmodifiableMap(fullMap);
         // System.out.println("MGH: " + this);
+
+        this.qualifierIndexes = compileIndexes(fullMap);
+        if (qualifierIndexes != null) {
+            int n = qualifierIndexes.size();
+            this.qualifiersByIndex = new AnnotationMirror[n];
+            this.subtypeMatrix = new long[n][(n + 63) / 64];
+            for (AnnotationMirror qual : fullMap.keySet()) {
+                int i = qualifierIndexes.get(AnnotationUtils.annotationName(qual));
+                qualifiersByIndex[i] = qual;
+                setSubtypeBit(i, i);
+                for (AnnotationMirror sup : fullMap.get(qual)) {
+                    setSubtypeBit(i, qualifierIndexes.get(AnnotationUtils.annotationName(sup)));
+                }
+            }
+            this.lubTable = new int[n][n];
+            this.glbTable = new int[n][n];
+            this.topByIndex = new AnnotationMirror[n];
+            this.bottomByIndex = new AnnotationMirror[n];
+        } else {
+            this.qualifiersByIndex = null;
+            this.subtypeMatrix = null;
+            this.lubTable = null;
+            this.glbTable = null;
+            this.topByIndex = null;
+            this.bottomByIndex = null;
+        }
+    }
+
+    /**
+     * Number the qualifiers of the hierarchy, or return null if the hierarchy cannot be compiled:
+     * if a qualifier has elements, or if a supertype is not itself a qualifier of the hierarchy.
+     */
+    private static /*@Nullable*/ Map</*@Interned*/ String, Integer> compileIndexes(
+            Map<AnnotationMirror, Set<AnnotationMirror>> fullMap) {
+        Map</*@Interned*/ String, Integer> indexes = new HashMap<>();
+        for (AnnotationMirror qual : fullMap.keySet()) {
+            if (!ElementFilter.methodsIn(qual.getAnnotationType().asElement().getEnclosedElements())
+                    .isEmpty()) {
+                return null;
+            }
+            indexes.put(AnnotationUtils.annotationName(qual), indexes.size());
+        }
+        for (Set<AnnotationMirror> supers : fullMap.values()) {
+            for (AnnotationMirror sup : supers) {
+                if (!indexes.containsKey(AnnotationUtils.annotationName(sup))) {
+                    return null;
+                }
+            }
+        }
+        return indexes;
+    }
+
+    /** Record in {@link #subtypeMatrix} that qualifier {@code sub} is a subtype of {@code sup}. */
+    private void setSubtypeBit(int sub, int sup) {
+        subtypeMatrix[sub][sup >>> 6] |= 1L << sup;
+    }
+
+    /**
+     * @return the index of {@code qual} in the compiled hierarchy, or -1 if the hierarchy is not
+     *     compiled or does not contain {@code qual}
+     */
+    private int indexOf(/*@Nullable*/ AnnotationMirror qual) {
+        if (qualifierIndexes == null || qual == null) {
+            return -1;
+        }
+        Integer index = qualifierIndexes.get(AnnotationUtils.annotationName(qual));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return the entry for {@code result} in {@link #lubTable} or {@link #glbTable}, or 0 if it
+     *     cannot be memoized
+     */
+    private int tableEntry(/*@Nullable*/ AnnotationMirror result) {
+        if (result == null) {
+            return -1;
+        }
+        return indexOf(result) + 1;
     }
 
     /**
@@ -278,6 +388,17 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror getTopAnnotation(AnnotationMirror start) {
+        int index = indexOf(start);
+        if (index >= 0) {
+            if (topByIndex[index] == null) {
+                topByIndex[index] = findTopAnnotation(start);
+            }
+            return topByIndex[index];
+        }
+        return findTopAnnotation(start);
+    }
+
+    private AnnotationMirror findTopAnnotation(AnnotationMirror start) {
         for (AnnotationMirror top : tops) {
             if (AnnotationUtils.areSame(start, top) || isSubtype(start, top)) {
                 return top;
@@ -298,6 +419,17 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror getBottomAnnotation(AnnotationMirror start) {
+        int index = indexOf(start);
+        if (index >= 0) {
+            if (bottomByIndex[index] == null) {
+                bottomByIndex[index] = findBottomAnnotation(start);
+            }
+            return bottomByIndex[index];
+        }
+        return findBottomAnnotation(start);
+    }
+
+    private AnnotationMirror findBottomAnnotation(AnnotationMirror start) {
         for (AnnotationMirror bot : bottoms) {
             if (AnnotationUtils.areSame(start, bot) || isSubtype(bot, start)) {
                 return bot;
@@ -395,6 +527,23 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int i1 = indexOf(a1);
+        int i2 = indexOf(a2);
+        if (i1 >= 0 && i2 >= 0) {
+            if (lubTable[i1][i2] == 0) {
+                AnnotationMirror lub = findLeastUpperBound(a1, a2);
+                int entry = tableEntry(lub);
+                if (entry == 0) {
+                    return lub;
+                }
+                lubTable[i1][i2] = entry;
+            }
+            return lubTable[i1][i2] < 0 ? null : qualifiersByIndex[lubTable[i1][i2] - 1];
+        }
+        return findLeastUpperBound(a1, a2);
+    }
+
+    private AnnotationMirror findLeastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
         if (!AnnotationUtils.areSameIgnoringValues(getTopAnnotation(a1), getTopAnnotation(a2))) {
             return null;
         } else if (isSubtype(a1, a2)) {
@@ -425,6 +574,23 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int i1 = indexOf(a1);
+        int i2 = indexOf(a2);
+        if (i1 >= 0 && i2 >= 0) {
+            if (glbTable[i1][i2] == 0) {
+                AnnotationMirror glb = findGreatestLowerBound(a1, a2);
+                int entry = tableEntry(glb);
+                if (entry == 0) {
+                    return glb;
+                }
+                glbTable[i1][i2] = entry;
+            }
+            return glbTable[i1][i2] < 0 ? null : qualifiersByIndex[glbTable[i1][i2] - 1];
+        }
+        return findGreatestLowerBound(a1, a2);
+    }
+
+    private AnnotationMirror findGreatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
         if (AnnotationUtils.areSameIgnoringValues(a1, a2)) {
             return AnnotationUtils.areSame(a1, a2) ? a1 : getBottomAnnotation(a1);
         }
@@ -463,6 +629,12 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
      */
     @Override
     public boolean isSubtype(AnnotationMirror rhs, AnnotationMirror lhs) {
+        int rhsIndex = indexOf(rhs);
+        int lhsIndex = indexOf(lhs);
+        if (rhsIndex >= 0 && lhsIndex >= 0) {
+            return (subtypeMatrix[rhsIndex][lhsIndex >>> 6] & (1L << lhsIndex)) != 0;
+        }
+
         checkAnnoInGraph(rhs);
         checkAnnoInGraph(lhs);
 
@@ -0,0 +1,213 @@
+package org.checkerframework.framework.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Accumulates the wall-clock time and the allocated bytes that a checker spends in each phase of
+ * type-checking, separately for each compilation unit.
+ *
+ * <p>Phases are bracketed by calls to {@link #start} and {@link #stop}, which may nest. Every phase
+ * is charged only for its <em>own</em> time and allocations: the cost of a nested phase is
+ * subtracted from the enclosing one. For example, the CFG construction and dataflow analysis that
+ * run while the visitor checks a class are not counted as visitor time.
+ *
+ * <p>Allocated bytes are measured per thread, using {@code
+ * com.sun.management.ThreadMXBean#getThreadAllocatedBytes}; they are reported as 0 if the JVM does
+ * not support this measurement.
+ *
+ * <p>A disabled profiler does nothing, so the calls can stay in place when profiling is off. This
+ * class is not thread-safe.
+ *
+ * @see org.checkerframework.framework.source.SourceChecker#getProfiler()
+ */
+public class PhaseProfiler {
+
+    /** The phases that are profiled. */
+    public enum Phase {
+        /** Parsing the stub files and the annotated JDK. */
+        STUB_PARSING,
+        /** Loading the annotation classes of the supported type qualifiers. */
+        ANNOTATION_LOADING,
+        /** Building control flow graphs. */
+        CFG_CONSTRUCTION,
+        /** Running the dataflow analysis to a fixpoint. */
+        DATAFLOW,
+        /** Visiting the trees of a compilation unit, excluding the other phases. */
+        VISITOR,
+        /** Applying default qualifiers to types. */
+        DEFAULTING
+    }
+
+    /** The header line of the CSV output. */
+    public static final String CSV_HEADER =
+            "checker,compilation_unit,phase,calls,wall_ns,allocated_bytes";
+
+    /** A phase that has been started, but not stopped yet. */
+    private static final class Frame {
+        final Phase phase;
+        final long startNanos;
+        final long startBytes;
+        /** The time spent in nested phases. */
+        long nestedNanos;
+        /** The bytes allocated in nested phases. */
+        long nestedBytes;
+
+        Frame(Phase phase, long startNanos, long startBytes) {
+            this.phase = phase;
+            this.startNanos = startNanos;
+            this.startBytes = startBytes;
+        }
+    }
+
+    /** The counters of one phase: the number of calls, nanoseconds, and allocated bytes. */
+    private static final int CALLS = 0, NANOS = 1, BYTES = 2;
+
+    /** The name of the profiled checker. */
+    private final String checkerName;
+
+    /** Whether profiling is enabled. */
+    private final boolean enabled;
+
+    /** The thread bean used to measure allocations, or {@code null} if not supported. */
+    private final com.sun.management.ThreadMXBean allocationBean;
+
+    /** The compilation unit that is currently being checked, or "" before the first one. */
+    private String compilationUnit = "";
+
+    /** The started phases, innermost first. */
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    /** The counters per compilation unit and phase, in the order they were first recorded. */
+    private final Map<String, Map<Phase, long[]>> counters = new LinkedHashMap<>();
+
+    /**
+     * Create a new profiler.
+     *
+     * @param checkerName the name of the checker, used in the output
+     * @param enabled whether to profile; if false, all methods do nothing
+     */
+    public PhaseProfiler(String checkerName, boolean enabled) {
+        this.checkerName = checkerName;
+        this.enabled = enabled;
+        com.sun.management.ThreadMXBean bean = null;
+        if (enabled) {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            if (threadBean instanceof com.sun.management.ThreadMXBean) {
+                bean = (com.sun.management.ThreadMXBean) threadBean;
+                if (bean.isThreadAllocatedMemorySupported()
+                        && !bean.isThreadAllocatedMemoryEnabled()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                }
+                if (!bean.isThreadAllocatedMemoryEnabled()) {
+                    bean = null;
+                }
+            }
+        }
+        this.allocationBean = bean;
+    }
+
+    /** @return whether this profiler records anything */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set the compilation unit that the following phases are charged to.
+     *
+     * @param compilationUnit the name of the compilation unit, usually its file name
+     */
+    public void setCompilationUnit(String compilationUnit) {
+        if (enabled) {
+            this.compilationUnit = compilationUnit;
+        }
+    }
+
+    /**
+     * Start a phase. Every call must be matched by a call to {@link #stop} with the same phase,
+     * usually in a {@code finally} block.
+     */
+    public void start(Phase phase) {
+        if (enabled) {
+            frames.push(new Frame(phase, System.nanoTime(), allocatedBytes()));
+        }
+    }
+
+    /** Stop the phase that was started last, which must be {@code phase}. */
+    public void stop(Phase phase) {
+        if (!enabled) {
+            return;
+        }
+        Frame frame = frames.pop();
+        assert frame.phase == phase : "stopped " + phase + " while in " + frame.phase;
+        long nanos = System.nanoTime() - frame.startNanos;
+        long bytes = allocatedBytes() - frame.startBytes;
+
+        Map<Phase, long[]> unitCounters = counters.get(compilationUnit);
+        if (unitCounters == null) {
+            unitCounters = new EnumMap<>(Phase.class);
+            counters.put(compilationUnit, unitCounters);
+        }
+        long[] phaseCounters = unitCounters.get(phase);
+        if (phaseCounters == null) {
+            phaseCounters = new long[3];
+            unitCounters.put(phase, phaseCounters);
+        }
+        phaseCounters[CALLS]++;
+        phaseCounters[NANOS] += nanos - frame.nestedNanos;
+        phaseCounters[BYTES] += bytes - frame.nestedBytes;
+
+        Frame enclosing = frames.peek();
+        if (enclosing != null) {
+            enclosing.nestedNanos += nanos;
+            enclosing.nestedBytes += bytes;
+        }
+    }
+
+    /** @return the number of bytes allocated by the current thread so far, or 0 */
+    private long allocatedBytes() {
+        if (allocationBean == null) {
+            return 0;
+        }
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Append the recorded counters as CSV lines, without header, to {@code out}. The columns are
+     * described by {@link #CSV_HEADER}; times are in nanoseconds.
+     */
+    public void appendCsv(List<String> out) {
+        for (Map.Entry<String, Map<Phase, long[]>> unit : counters.entrySet()) {
+            for (Map.Entry<Phase, long[]> phase : unit.getValue().entrySet()) {
+                long[] c = phase.getValue();
+                out.add(
+                        csvField(checkerName)
+                                + ","
+                                + csvField(unit.getKey())
+                                + ","
+                                + phase.getKey().name().toLowerCase(Locale.ROOT)
+                                + ","
+                                + c[CALLS]
+                                + ","
+                                + c[NANOS]
+                                + ","
+                                + c[BYTES]);
+            }
+        }
+    }
+
+    /** Quote {@code s} for use as a CSV field, if necessary. */
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -12,6 +12,7 @@ import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Type.WildcardType;
 import java.lang.annotation.Annotation;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.IdentityHashMap;
 import java.util.List;
@@ -86,11 +87,17 @@ public class QualifierDefaults {
     private final DefaultSet checkedCodeDefaults = new DefaultSet();
     private final DefaultSet uncheckedCodeDefaults = new DefaultSet();
 
-    /** Mapping from an Element to the source Tree of the declaration. */
+    /** Size of the {@link #elementToBoundType} cache. */
     private static final int CACHE_SIZE = 300;
 
+    /**
+     * Mapping from a type parameter Element to its bound type. Shared by all factories, so it is
+     * synchronized.
+     */
     protected static final Map<Element, BoundType> elementToBoundType =
-            CollectionUtils.createLRUCache(CACHE_SIZE);
+            Collections.synchronizedMap(
+                    CollectionUtils.<Element, BoundType>createLRUCache(
+                            "QualifierDefaults.elementToBoundType", CACHE_SIZE));
 
     /**
      * Defaults that apply for a certain Element. On the one hand this is used for caching (an
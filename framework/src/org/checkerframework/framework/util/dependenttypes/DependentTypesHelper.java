@@ -15,11 +15,15 @@ import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
@@ -36,10 +40,12 @@ import org.checkerframework.framework.type.treeannotator.TreeAnnotator;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeComparer;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
 import org.checkerframework.framework.util.AnnotationBuilder;
+import org.checkerframework.framework.util.AnnotationMirrorMap;
 import org.checkerframework.framework.util.FlowExpressionParseUtil;
 import org.checkerframework.framework.util.FlowExpressionParseUtil.FlowExpressionContext;
 import org.checkerframework.framework.util.PluginUtil;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
@@ -74,6 +80,16 @@ public class DependentTypesHelper {
     /** A list of annotations that are dependent type annotations. */
     protected final List<Class<? extends Annotation>> expressionAnnos;
 
+    /** Size of {@link #declarationCache}. */
+    private static final int DECLARATION_CACHE_SIZE = 300;
+
+    /**
+     * Maps a method or field to its dependent type annotations and their standardized versions.
+     * Used for annotations that are standardized in the context of their declaration, which does
+     * not change from one use of the declaration to the next.
+     */
+    private final Map<Element, Map<AnnotationMirror, AnnotationMirror>> declarationCache;
+
     public DependentTypesHelper(
             AnnotatedTypeFactory factory, List<Class<? extends Annotation>> expressionAnnos) {
         this(factory, null, expressionAnnos);
@@ -93,6 +109,23 @@ public class DependentTypesHelper {
             expressionAnnos.add(anno);
         }
         this.expressionAnnos = expressionAnnos;
+        this.declarationCache =
+                CollectionUtils.createLRUCache(
+                        factory.getClass().getSimpleName() + ".dependentTypesDeclarationCache",
+                        DECLARATION_CACHE_SIZE);
+    }
+
+    /**
+     * Returns the map from dependent type annotations to their standardized versions in the
+     * context of {@code declaration}.
+     */
+    private Map<AnnotationMirror, AnnotationMirror> standardizedAnnotationsOf(Element declaration) {
+        Map<AnnotationMirror, AnnotationMirror> standardized = declarationCache.get(declaration);
+        if (standardized == null) {
+            standardized = new AnnotationMirrorMap<>();
+            declarationCache.put(declaration, standardized);
+        }
+        return standardized;
     }
 
     /**
@@ -230,7 +263,8 @@ public class DependentTypesHelper {
         FlowExpressionContext context =
                 FlowExpressionContext.buildContextForMethodDeclaration(
                         m, enclosingType, factory.getContext());
-        standardizeDoNotUseLocals(context, factory.getPath(m), atm);
+        standardizeDoNotUseLocals(
+                context, factory.getPath(m), atm, standardizedAnnotationsOf(ele));
     }
 
     public void standardizeVariable(Tree node, AnnotatedTypeMirror type, Element ele) {
@@ -250,7 +284,13 @@ public class DependentTypesHelper {
                     FlowExpressionContext parameterContext =
                             FlowExpressionContext.buildContextForMethodDeclaration(
                                     methodTree, enclosingType, factory.getContext());
-                    standardizeDoNotUseLocals(parameterContext, path, type);
+                    // The context is that of the method, like for its return type.
+                    standardizeDoNotUseLocals(
+                            parameterContext,
+                            path,
+                            type,
+                            standardizedAnnotationsOf(
+                                    TreeUtils.elementFromDeclaration(methodTree)));
                     break;
                 }
                 // If there is no enclosing method, then the parameter is a parameter to a lambda
@@ -288,9 +328,15 @@ public class DependentTypesHelper {
                 } else {
                     receiverF = FlowExpressions.internalRepOfImplicitReceiver(ele);
                 }
+                // Expressions are resolved in the scope of path, so the results may only be
+                // cached per field if path is that of the field's declaration.
+                Map<AnnotationMirror, AnnotationMirror> standardized =
+                        node.getKind() == Tree.Kind.VARIABLE
+                                ? standardizedAnnotationsOf(ele)
+                                : new AnnotationMirrorMap<AnnotationMirror>();
                 FlowExpressionContext fieldContext =
                         new FlowExpressionContext(receiverF, null, factory.getContext());
-                standardizeDoNotUseLocals(fieldContext, path, type);
+                standardizeDoNotUseLocals(fieldContext, path, type, standardized);
                 break;
         }
     }
@@ -373,22 +419,48 @@ public class DependentTypesHelper {
 
     private void standardizeUseLocals(
             FlowExpressionContext context, TreePath localScope, AnnotatedTypeMirror type) {
-        standardizeAtm(context, localScope, type, true);
+        standardizeAtm(
+                context,
+                localScope,
+                type,
+                true,
+                new AnnotationMirrorMap<AnnotationMirror>());
     }
 
     private void standardizeDoNotUseLocals(
             FlowExpressionContext context, TreePath localScope, AnnotatedTypeMirror type) {
-        standardizeAtm(context, localScope, type, false);
+        standardizeAtm(
+                context,
+                localScope,
+                type,
+                false,
+                new AnnotationMirrorMap<AnnotationMirror>());
     }
 
+    private void standardizeDoNotUseLocals(
+            FlowExpressionContext context,
+            TreePath localScope,
+            AnnotatedTypeMirror type,
+            Map<AnnotationMirror, AnnotationMirror> standardized) {
+        standardizeAtm(context, localScope, type, false, standardized);
+    }
+
+    /**
+     * Standardizes all dependent type annotations in {@code type}.
+     *
+     * @param standardized maps annotations that have already been standardized in {@code context}
+     *     to the result; it is updated with the annotations of {@code type}
+     */
     private void standardizeAtm(
             FlowExpressionContext context,
             TreePath localScope,
             AnnotatedTypeMirror type,
-            boolean useLocalScope) {
+            boolean useLocalScope,
+            Map<AnnotationMirror, AnnotationMirror> standardized) {
         // localScope is null in dataflow when creating synthetic trees for enhanced for loops.
         if (localScope != null) {
-            new StandardizeTypeAnnotator(context, localScope, useLocalScope).visit(type);
+            new StandardizeTypeAnnotator(context, localScope, useLocalScope, standardized)
+                    .visit(type);
         }
     }
 
@@ -412,17 +484,30 @@ public class DependentTypesHelper {
         }
     }
 
+    /**
+     * Standardizes all dependent type annotations of a type in one pass. Each distinct annotation
+     * and each distinct expression string is standardized only once, even if it appears on
+     * several components of the type, such as type arguments and bounds.
+     */
     private class StandardizeTypeAnnotator extends AnnotatedTypeScanner<Void, Void> {
         private final FlowExpressionContext context;
         private final TreePath localScope;
         /** Whether or not the expression might contain a variable declared in local scope */
         private final boolean useLocalScope;
+        /** Maps annotations to their standardized versions in the context. */
+        private final Map<AnnotationMirror, AnnotationMirror> standardized;
+        /** Maps expression strings to their standardized versions in the context. */
+        private final Map<String, String> standardizedStrings = new HashMap<>();
 
         private StandardizeTypeAnnotator(
-                FlowExpressionContext context, TreePath localScope, boolean useLocalScope) {
+                FlowExpressionContext context,
+                TreePath localScope,
+                boolean useLocalScope,
+                Map<AnnotationMirror, AnnotationMirror> standardized) {
             this.context = context;
             this.localScope = localScope;
             this.useLocalScope = useLocalScope;
+            this.standardized = standardized;
         }
 
         private AnnotationMirror standardizeAnnotation(
@@ -433,11 +518,33 @@ public class DependentTypesHelper {
             if (!isExpressionAnno(anno)) {
                 return null;
             }
+            AnnotationMirror result = standardized.get(anno);
+            if (result == null) {
+                result = buildStandardizedAnnotation(context, localScope, anno, useLocalScope);
+                standardized.put(anno, result);
+            }
+            return result;
+        }
+
+        private AnnotationMirror buildStandardizedAnnotation(
+                FlowExpressionContext context,
+                TreePath localScope,
+                AnnotationMirror anno,
+                boolean useLocalScope) {
             List<String> expressionStrings =
                     AnnotationUtils.getElementValueArray(anno, "value", String.class, true);
             List<String> vpdStrings = new ArrayList<>();
             for (String expression : expressionStrings) {
-                vpdStrings.add(standardizeString(expression, context, localScope, useLocalScope));
+                String vpdString = standardizedStrings.get(expression);
+                if (vpdString == null) {
+                    vpdString = standardizeString(expression, context, localScope, useLocalScope);
+                    standardizedStrings.put(expression, vpdString);
+                }
+                vpdStrings.add(vpdString);
+            }
+            if (vpdStrings.equals(expressionStrings) && hasOnlyValueElement(anno)) {
+                // Already standardized, and the annotation built below would be the same.
+                return anno;
             }
             AnnotationBuilder builder =
                     new AnnotationBuilder(
@@ -446,6 +553,14 @@ public class DependentTypesHelper {
             return builder.build();
         }
 
+        /** Returns true if "value" is the only element that is explicitly given in {@code anno}. */
+        private boolean hasOnlyValueElement(AnnotationMirror anno) {
+            Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                    anno.getElementValues();
+            return values.size() == 1
+                    && values.keySet().iterator().next().getSimpleName().contentEquals("value");
+        }
+
         @Override
         public Void visitTypeVariable(AnnotatedTypeMirror.AnnotatedTypeVariable type, Void aVoid) {
             if (visitedNodes.containsKey(type)) {
@@ -562,9 +677,10 @@ public class DependentTypesHelper {
         FlowExpressionContext context =
                 FlowExpressionContext.buildContextForMethodDeclaration(
                         node, enclosingType, factory.getContext());
+        Map<AnnotationMirror, AnnotationMirror> standardized = standardizedAnnotationsOf(ele);
         for (int i = 0; i < methodType.getTypeVariables().size(); i++) {
             AnnotatedTypeMirror atm = methodType.getTypeVariables().get(i);
-            standardizeDoNotUseLocals(context, factory.getPath(node), atm);
+            standardizeDoNotUseLocals(context, factory.getPath(node), atm, standardized);
             checkType(atm, node.getTypeParameters().get(i));
         }
     }
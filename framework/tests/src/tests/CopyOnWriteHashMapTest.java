@@ -0,0 +1,208 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.checkerframework.dataflow.util.CopyOnWriteHashMap;
+import org.junit.Test;
+
+/**
+ * Tests that every way of modifying a {@link CopyOnWriteHashMap} affects only that map, both when
+ * its backing map is shared with a copy and when it is not.
+ */
+public class CopyOnWriteHashMapTest {
+
+    /** Returns a new map from "a", "b", and "c" to 1, 2, and 3. */
+    private static CopyOnWriteHashMap<String, Integer> abc() {
+        CopyOnWriteHashMap<String, Integer> m = new CopyOnWriteHashMap<>();
+        m.put("a", 1);
+        m.put("b", 2);
+        m.put("c", 3);
+        return m;
+    }
+
+    /** Returns a new {@link HashMap} with the given keys and values. */
+    private static Map<String, Integer> map(Object... keysAndValues) {
+        Map<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            m.put((String) keysAndValues[i], (Integer) keysAndValues[i + 1]);
+        }
+        return m;
+    }
+
+    /** Removes the entry for {@code key} through an iterator of {@code m}. */
+    private static void removeWithIterator(Map<String, Integer> m, String key) {
+        Iterator<Entry<String, Integer>> it = m.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getKey().equals(key)) {
+                it.remove();
+            }
+        }
+    }
+
+    /** Sets the value of {@code key} through an entry of {@code m}. */
+    private static void setWithEntry(Map<String, Integer> m, String key, Integer value) {
+        for (Entry<String, Integer> e : m.entrySet()) {
+            if (e.getKey().equals(key)) {
+                assertEquals(m.get(key), e.setValue(value));
+                assertEquals(value, e.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void iteratorRemoveUnshared() {
+        CopyOnWriteHashMap<String, Integer> m = abc();
+        removeWithIterator(m, "b");
+        assertEquals(map("a", 1, "c", 3), m);
+    }
+
+    @Test
+    public void iteratorRemoveShared() {
+        CopyOnWriteHashMap<String, Integer> original = abc();
+        CopyOnWriteHashMap<String, Integer> copy = CopyOnWriteHashMap.copyOf(original);
+        assertTrue(copy.sharesStorageWith(original));
+
+        removeWithIterator(copy, "b");
+        assertEquals(map("a", 1, "c", 3), copy);
+        assertEquals(map("a", 1, "b", 2, "c", 3), original);
+        assertFalse(copy.sharesStorageWith(original));
+
+        removeWithIterator(original, "a");
+        assertEquals(map("b", 2, "c", 3), original);
+        assertEquals(map("a", 1, "c", 3), copy);
+    }
+
+    @Test
+    public void iteratorRemoveAllShared() {
+        CopyOnWriteHashMap<String, Integer> original = abc();
+        CopyOnWriteHashMap<String, Integer> copy = CopyOnWriteHashMap.copyOf(original);
+        // The first removal copies the backing map in the middle of the iteration.
+        Iterator<Entry<String, Integer>> it = copy.entrySet().iterator();
+        while (it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+        assertTrue(copy.isEmpty());
+        assertEquals(map("a", 1, "b", 2, "c", 3), original);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iteratorRemoveTwice() {
+        Iterator<Entry<String, Integer>> it = abc().entrySet().iterator();
+        it.next();
+        it.remove();
+        it.remove();
+    }
+
+    @Test
+    public void entrySetValueUnshared() {
+        CopyOnWriteHashMap<String, Integer> m = abc();
+        setWithEntry(m, "b", 20);
+        assertEquals(map("a", 1, "b", 20, "c", 3), m);
+    }
+
+    @Test
+    public void entrySetValueShared() {
+        CopyOnWriteHashMap<String, Integer> original = abc();
+        CopyOnWriteHashMap<String, Integer> copy = CopyOnWriteHashMap.copyOf(original);
+
+        setWithEntry(copy, "b", 20);
+        assertEquals(map("a", 1, "b", 20, "c", 3), copy);
+        assertEquals(map("a", 1, "b", 2, "c", 3), original);
+
+        setWithEntry(original, "c", 30);
+        assertEquals(map("a", 1, "b", 2, "c", 30), original);
+        assertEquals(map("a", 1, "b", 20, "c", 3), copy);
+    }
+
+    @Test
+    public void entrySetValueAllShared() {
+        CopyOnWriteHashMap<String, Integer> original = abc();
+        CopyOnWriteHashMap<String, Integer> copy = CopyOnWriteHashMap.copyOf(original);
+        // The first update copies the backing map in the middle of the iteration.
+        for (Entry<String, Integer> e : copy.entrySet()) {
+            e.setValue(e.getValue() * 10);
+        }
+        assertEquals(map("a", 10, "b", 20, "c", 30), copy);
+        assertEquals(map("a", 1, "b", 2, "c", 3), original);
+    }
+
+    @Test
+    public void mutationAfterCopyOfUnshared() {
+        Map<String, Integer> source = map("a", 1, "b", 2);
+        CopyOnWriteHashMap<String, Integer> copy = CopyOnWriteHashMap.copyOf(source);
+        copy.put("c", 3);
+        copy.remove("a");
+        source.put("d", 4);
+        assertEquals(map("b", 2, "c", 3), copy);
+        assertEquals(map("a", 1, "b", 2, "d", 4), source);
+    }
+
+    @Test
+    public void mutationOfCopyAfterCopyOf() {
+        CopyOnWriteHashMap<String, Integer> original = abc();
+
+        CopyOnWriteHashMap<String, Integer> copy = CopyOnWriteHashMap.copyOf(original);
+        copy.put("d", 4);
+        assertEquals(map("a", 1, "b", 2, "c", 3, "d", 4), copy);
+        assertEquals(map("a", 1, "b", 2, "c", 3), original);
+
+        copy = CopyOnWriteHashMap.copyOf(original);
+        copy.remove("a");
+        assertEquals(map("b", 2, "c", 3), copy);
+        assertEquals(map("a", 1, "b", 2, "c", 3), original);
+
+        copy = CopyOnWriteHashMap.copyOf(original);
+        copy.putAll(map("a", 10));
+        assertEquals(map("a", 10, "b", 2, "c", 3), copy);
+        assertEquals(map("a", 1, "b", 2, "c", 3), original);
+
+        copy = CopyOnWriteHashMap.copyOf(original);
+        copy.clear();
+        assertTrue(copy.isEmpty());
+        assertEquals(map("a", 1, "b", 2, "c", 3), original);
+    }
+
+    @Test
+    public void mutationOfOriginalAfterCopyOf() {
+        CopyOnWriteHashMap<String, Integer> original = abc();
+        CopyOnWriteHashMap<String, Integer> copy = CopyOnWriteHashMap.copyOf(original);
+        original.put("a", 10);
+        original.remove("b");
+        assertEquals(map("a", 10, "c", 3), original);
+        assertEquals(map("a", 1, "b", 2, "c", 3), copy);
+
+        CopyOnWriteHashMap<String, Integer> copy2 = CopyOnWriteHashMap.copyOf(original);
+        original.clear();
+        assertTrue(original.isEmpty());
+        assertEquals(map("a", 10, "c", 3), copy2);
+    }
+
+    @Test
+    public void removeOfAbsentKeyKeepsSharing() {
+        CopyOnWriteHashMap<String, Integer> original = abc();
+        CopyOnWriteHashMap<String, Integer> copy = CopyOnWriteHashMap.copyOf(original);
+        copy.remove("z");
+        assertTrue(copy.sharesStorageWith(original));
+    }
+
+    @Test
+    public void putAllIntoEmptyMapShares() {
+        CopyOnWriteHashMap<String, Integer> original = abc();
+        CopyOnWriteHashMap<String, Integer> target = new CopyOnWriteHashMap<>();
+        target.putAll(original);
+        assertTrue(target.sharesStorageWith(original));
+        assertEquals(original, target);
+
+        original.remove("a");
+        target.put("d", 4);
+        assertEquals(map("a", 1, "b", 2, "c", 3, "d", 4), target);
+        assertEquals(map("b", 2, "c", 3), original);
+    }
+}
@@ -0,0 +1,366 @@
+package tests;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.ToolProvider;
+import org.checkerframework.dataflow.analysis.FlowExpressions.Receiver;
+import org.checkerframework.dataflow.analysis.FlowExpressions.ThisReference;
+import org.checkerframework.dataflow.analysis.FlowExpressions.ValueLiteral;
+import org.checkerframework.framework.util.BaseContext;
+import org.checkerframework.framework.util.FlowExpressionParseUtil;
+import org.checkerframework.framework.util.FlowExpressionParseUtil.FlowExpressionContext;
+import org.checkerframework.framework.util.FlowExpressionParseUtil.FlowExpressionParseException;
+import org.checkerframework.framework.util.OptionConfiguration;
+import org.checkerframework.javacutil.AnnotationProvider;
+import org.checkerframework.javacutil.CollectionUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link FlowExpressionParseUtil#parse}: the expressions that it classifies with scanners
+ * are parsed as the anchored regular expressions that the scanners replace prescribe, and the
+ * cache of parsed flow expressions distinguishes contexts.
+ */
+public class FlowExpressionParseUtilTest {
+
+    private static final String IDENTIFIER = "[a-zA-Z_$][a-zA-Z_$0-9]*";
+
+    private static final Pattern PARAMETER = Pattern.compile("^#([1-9][0-9]*)$");
+    private static final Pattern THIS = Pattern.compile("^this$");
+    private static final Pattern SUPER = Pattern.compile("^super$");
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("^" + IDENTIFIER + "$");
+    private static final Pattern METHOD = Pattern.compile("^(" + IDENTIFIER + ")\\((.*)\\)$");
+    private static final Pattern ARRAY = Pattern.compile("^(.*)\\[(.*)\\]$");
+    private static final Pattern MEMBER_SELECT = Pattern.compile("^([^.]+)\\.(.+)$");
+    private static final Pattern INT = Pattern.compile("^[-+]?[1-9][0-9]*$");
+    private static final Pattern LONG = Pattern.compile("^[-+]?[1-9][0-9]*L$");
+    private static final Pattern STRING = Pattern.compile("^\"(?:[^\"\\\\]|\\\\.)*\"$");
+    private static final Pattern NULL = Pattern.compile("^null$");
+    private static final Pattern PARENTHESES = Pattern.compile("^\\((.*)\\)$");
+
+    /** The pieces that the random test strings are made of. */
+    private static final String[] PIECES = {
+        "a", "Z", "_", "$", "0", "1", "9", "#", "-", "+", "L", "\"", "\\", ".", "(", ")", "[", "]",
+        " ", "\n", "\r", "\u0085", "\u2028", "\u2029", "\u00e9", "null", "this", "super"
+    };
+
+    /** Strings that are close to the boundaries of the regular expressions. */
+    private static final List<String> CASES =
+            Arrays.asList(
+                    "",
+                    "#0",
+                    "#1",
+                    "#10",
+                    "#01",
+                    "#99999999999",
+                    "#",
+                    "#-1",
+                    "0",
+                    "-0",
+                    "+12",
+                    "12L",
+                    "12l",
+                    "-L",
+                    "L",
+                    "\"\"",
+                    "\"",
+                    "\"a\\\"b\"",
+                    "\"a\\\"",
+                    "\"\\\\\"",
+                    "\"a\nb\"",
+                    "\"\\\n\"",
+                    "\"a\"b\"",
+                    "null",
+                    "null\n",
+                    "this",
+                    "this\n",
+                    "super",
+                    "$a_1",
+                    "1a",
+                    "a.b",
+                    "a.b.c",
+                    ".a",
+                    "a.",
+                    "a\n.b",
+                    "a.b\n",
+                    "a.\nb",
+                    "f()",
+                    "f(a, b)",
+                    "f(\n)",
+                    "f(a)\n",
+                    "f(a))",
+                    "f)",
+                    "(",
+                    "()",
+                    "(a)",
+                    "(\n)",
+                    "(a)(b)",
+                    "a[0]",
+                    "a[b[0]]",
+                    "a[0][1]",
+                    "[]",
+                    "]",
+                    "a\n[0]",
+                    "a[0]\n",
+                    "a[\u2028]");
+
+    /** A parse error. */
+    private static final Object ERROR = new Object();
+
+    /** The result of an expression that depends on name resolution, which is not tested here. */
+    private static final Object UNKNOWN = new Object();
+
+    @Test
+    public void parseFollowsRegularExpressions() {
+        Checker checker = new Checker();
+        for (String s : CASES) {
+            checker.check(s);
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < 200000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(9);
+            for (int j = 0; j < length; j++) {
+                sb.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            checker.check(sb.toString());
+        }
+    }
+
+    /** Parses strings in a fixed context and compares the results with the expected ones. */
+    private static class Checker {
+        final TestContext context = new TestContext();
+        final Receiver receiver = new ThisReference(context.declaredType("java.lang.String"));
+        final List<Receiver> arguments;
+        final FlowExpressionContext flowContext;
+
+        Checker() {
+            TypeMirror intType = context.types.getPrimitiveType(TypeKind.INT);
+            arguments =
+                    Arrays.<Receiver>asList(
+                            new ValueLiteral(intType, 1), new ValueLiteral(intType, 2));
+            flowContext = new FlowExpressionContext(receiver, arguments, context);
+        }
+
+        void check(String s) {
+            Object expected = expected(s);
+            if (expected == UNKNOWN) {
+                return;
+            }
+            Receiver actual;
+            try {
+                actual = parse(s, flowContext);
+            } catch (FlowExpressionParseException e) {
+                Assert.assertSame("unexpected parse error for " + escape(s), ERROR, expected);
+                return;
+            }
+            Assert.assertNotSame("expected a parse error for " + escape(s), ERROR, expected);
+            if (expected == receiver
+                    || expected == arguments.get(0)
+                    || expected == arguments.get(1)) {
+                Assert.assertSame(escape(s), expected, actual);
+            } else {
+                Assert.assertEquals(escape(s), expected, actual);
+            }
+        }
+
+        /**
+         * @return the receiver that {@code s} denotes according to the regular expressions and
+         *     their precedence in {@link FlowExpressionParseUtil}, {@link #ERROR}, or {@link
+         *     #UNKNOWN}
+         */
+        Object expected(String s) {
+            s = s.trim();
+            Matcher matcher;
+            if (NULL.matcher(s).matches()) {
+                return new ValueLiteral(context.types.getNullType(), (Object) null);
+            } else if (INT.matcher(s).matches()) {
+                return new ValueLiteral(
+                        context.types.getPrimitiveType(TypeKind.INT), Integer.parseInt(s));
+            } else if (LONG.matcher(s).matches()) {
+                return new ValueLiteral(
+                        context.types.getPrimitiveType(TypeKind.LONG),
+                        Long.parseLong(s.substring(0, s.length() - 1)));
+            } else if (STRING.matcher(s).matches()) {
+                return new ValueLiteral(
+                        context.declaredType("java.lang.String"), s.substring(1, s.length() - 1));
+            } else if (THIS.matcher(s).matches()) {
+                return receiver;
+            } else if (SUPER.matcher(s).matches() || IDENTIFIER_PATTERN.matcher(s).matches()) {
+                return UNKNOWN;
+            } else if ((matcher = PARAMETER.matcher(s)).matches()) {
+                String index = matcher.group(1);
+                if (index.length() > 9 || Integer.parseInt(index) > arguments.size()) {
+                    return ERROR;
+                }
+                return arguments.get(Integer.parseInt(index) - 1);
+            } else if (ARRAY.matcher(s).matches()
+                    || METHOD.matcher(s).matches()
+                    || MEMBER_SELECT.matcher(s).matches()) {
+                return UNKNOWN;
+            } else if ((matcher = PARENTHESES.matcher(s)).matches()) {
+                return expected(matcher.group(1));
+            } else {
+                return ERROR;
+            }
+        }
+    }
+
+    private static String escape(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c < ' ' || c > '~') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    @Test
+    public void cacheDistinguishesReceivers() throws FlowExpressionParseException {
+        TestContext context = new TestContext();
+        Receiver stringThis = new ThisReference(context.declaredType("java.lang.String"));
+        Receiver integerThis = new ThisReference(context.declaredType("java.lang.Integer"));
+        // ThisReference.equals ignores the type.
+        Assert.assertEquals(stringThis, integerThis);
+
+        Receiver first = parse("this", new FlowExpressionContext(stringThis, null, context));
+        Receiver second = parse("this", new FlowExpressionContext(integerThis, null, context));
+        Assert.assertSame(stringThis, first);
+        Assert.assertSame(integerThis, second);
+    }
+
+    @Test
+    public void cacheDistinguishesArguments() throws FlowExpressionParseException {
+        TestContext context = new TestContext();
+        TypeMirror intType = context.types.getPrimitiveType(TypeKind.INT);
+        Receiver one = new ValueLiteral(intType, 1);
+        Receiver two = new ValueLiteral(intType, 2);
+        Receiver receiver = new ThisReference(context.declaredType("java.lang.String"));
+
+        List<Receiver> arguments = new ArrayList<>(Collections.singletonList(one));
+        FlowExpressionContext flowContext = new FlowExpressionContext(receiver, arguments, context);
+        Assert.assertSame(one, parse("#1", flowContext));
+
+        // The cache must not be affected by a later change to the argument list.
+        arguments.set(0, two);
+        Assert.assertSame(two, parse("#1", flowContext));
+
+        List<Receiver> otherArguments = Collections.singletonList(one);
+        Assert.assertSame(
+                one, parse("#1", new FlowExpressionContext(receiver, otherArguments, context)));
+    }
+
+    @Test
+    public void cacheDistinguishesCheckerContexts() throws FlowExpressionParseException {
+        TestContext context = new TestContext();
+        TestContext otherContext = new TestContext();
+        Receiver receiver = new ThisReference(context.declaredType("java.lang.String"));
+        Receiver otherReceiver = new ThisReference(context.declaredType("java.lang.String"));
+
+        Assert.assertSame(
+                receiver, parse("this", new FlowExpressionContext(receiver, null, context)));
+        Assert.assertSame(
+                otherReceiver,
+                parse("this", new FlowExpressionContext(otherReceiver, null, otherContext)));
+    }
+
+    @Test
+    public void parameterOutOfRange() {
+        TestContext context = new TestContext();
+        Receiver receiver = new ThisReference(context.declaredType("java.lang.String"));
+        List<Receiver> arguments = Collections.emptyList();
+        for (String s : Arrays.asList("#99999999999", "#1")) {
+            try {
+                parse(s, new FlowExpressionContext(receiver, arguments, context));
+                Assert.fail("expected a FlowExpressionParseException for " + s);
+            } catch (FlowExpressionParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void clearCacheForgetsResults() throws FlowExpressionParseException {
+        TestContext context = new TestContext();
+        Receiver receiver = new ThisReference(context.declaredType("java.lang.String"));
+        parse("this", new FlowExpressionContext(receiver, null, context));
+        FlowExpressionParseUtil.clearCache();
+        Assert.assertTrue(
+                CollectionUtils.getCacheStatistics()
+                        .toString()
+                        .contains("FlowExpressionParseUtil.receiverCache: 0 entries"));
+    }
+
+    private static Receiver parse(String expression, FlowExpressionContext context)
+            throws FlowExpressionParseException {
+        return FlowExpressionParseUtil.parse(expression, context, null, false);
+    }
+
+    /** A checker context with the javac components of a new compiler. */
+    private static class TestContext implements BaseContext {
+        final ProcessingEnvironment env;
+        final Elements elements;
+        final Types types;
+
+        TestContext() {
+            JavacTask task =
+                    (JavacTask)
+                            ToolProvider.getSystemJavaCompiler()
+                                    .getTask(null, null, null, null, null, null);
+            elements = task.getElements();
+            types = task.getTypes();
+            env = JavacProcessingEnvironment.instance(((BasicJavacTask) task).getContext());
+        }
+
+        TypeMirror declaredType(String name) {
+            return types.getDeclaredType(elements.getTypeElement(name));
+        }
+
+        @Override
+        public ProcessingEnvironment getProcessingEnvironment() {
+            return env;
+        }
+
+        @Override
+        public Elements getElementUtils() {
+            return elements;
+        }
+
+        @Override
+        public Types getTypeUtils() {
+            return types;
+        }
+
+        @Override
+        public Trees getTreeUtils() {
+            return null;
+        }
+
+        @Override
+        public AnnotationProvider getAnnotationProvider() {
+            return null;
+        }
+
+        @Override
+        public OptionConfiguration getOptionConfiguration() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Runs the tests of {@link FlowTest} with the dataflow store cache enabled. The expected
+ * diagnostics are those of the tests without the cache. The cache is small, so that blocks are
+ * evicted and analyzed again.
+ */
+public class FlowStoreCacheTest extends CheckerFrameworkPerDirectoryTest {
+
+    public FlowStoreCacheTest(List<File> testFiles) {
+        super(
+                testFiles,
+                FlowTestChecker.class,
+                "flow",
+                "-Anomsgtext",
+                "-AflowStoreCacheSize=100");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"flow", "all-systems"};
+    }
+}
@@ -0,0 +1,256 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import org.checkerframework.common.subtyping.SubtypingChecker;
+import org.checkerframework.framework.test.CompilationResult;
+import org.checkerframework.framework.test.TestConfiguration;
+import org.checkerframework.framework.test.TestConfigurationBuilder;
+import org.checkerframework.framework.test.TypecheckExecutor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the "resultsCache" option: a compilation that replays cached diagnostics must report the
+ * same diagnostics as a compilation without the cache, and editing a class, the package-info file
+ * of its package, a class it depends on, a class that occurs only in the type of one of its
+ * expressions, or a stub file in a stub directory must invalidate its cached results.
+ */
+public class ResultsCacheTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String PACKAGE_INFO = "package rc;\n";
+
+    private static final String PACKAGE_INFO_WITH_DEFAULT =
+            "@DefaultQualifier(value = Encrypted.class, locations = TypeUseLocation.PARAMETER)\n"
+                    + "package rc;\n"
+                    + "import org.checkerframework.framework.qual.DefaultQualifier;\n"
+                    + "import org.checkerframework.framework.qual.TypeUseLocation;\n"
+                    + "import testlib.util.Encrypted;\n";
+
+    private static final String DEP =
+            "package dep;\n"
+                    + "import bar.Bar;\n"
+                    + "public class Dep {\n"
+                    + "    public static String get() {\n"
+                    + "        return \"\";\n"
+                    + "    }\n"
+                    + "    public static Bar bar() {\n"
+                    + "        return new Bar();\n"
+                    + "    }\n"
+                    + "}\n";
+
+    private static final String DEP_ENCRYPTED =
+            "package dep;\n"
+                    + "import bar.Bar;\n"
+                    + "import testlib.util.Encrypted;\n"
+                    + "public class Dep {\n"
+                    + "    @SuppressWarnings(\"return.type.incompatible\")\n"
+                    + "    public static @Encrypted String get() {\n"
+                    + "        return \"\";\n"
+                    + "    }\n"
+                    + "    public static Bar bar() {\n"
+                    + "        return new Bar();\n"
+                    + "    }\n"
+                    + "}\n";
+
+    /** Use does not name Bar; Bar only occurs in the type of the expression {@code Dep.bar()}. */
+    private static final String BAR = "package bar;\npublic class Bar {}\n";
+
+    private static final String BAR_ENCRYPTED =
+            "package bar;\n"
+                    + "import testlib.util.Encrypted;\n"
+                    + "public @Encrypted class Bar {}\n";
+
+    /** Stub files only apply to classes from class files, so the stub file is for the JDK. */
+    private static final String STUB =
+            "package java.lang;\nclass String {\n    String trim();\n}\n";
+
+    private static final String STUB_ENCRYPTED =
+            "package java.lang;\n"
+                    + "import testlib.util.Encrypted;\n"
+                    + "class String {\n"
+                    + "    @Encrypted String trim();\n"
+                    + "}\n";
+
+    private static final String USE =
+            "package rc;\n"
+                    + "import dep.Dep;\n"
+                    + "import testlib.util.Encrypted;\n"
+                    + "class Use {\n"
+                    + "    static void use(@Encrypted String s) {}\n"
+                    + "    static void use(@Encrypted Object o) {}\n"
+                    + "    static void test(String p) {\n"
+                    + "        use(p);\n"
+                    + "        use(Dep.get());\n"
+                    + "        use(Dep.bar());\n"
+                    + "        use(p.trim());\n"
+                    + "    }\n"
+                    + "}\n";
+
+    private static final String USE_EDITED =
+            "package rc;\n"
+                    + "import dep.Dep;\n"
+                    + "import testlib.util.Encrypted;\n"
+                    + "class Use {\n"
+                    + "    static void use(@Encrypted String s) {}\n"
+                    + "    static void use(@Encrypted Object o) {}\n"
+                    + "    static void test(String p) {\n"
+                    + "        use(p);\n"
+                    + "        use(Dep.get());\n"
+                    + "        use(Dep.bar());\n"
+                    + "        use(p.trim());\n"
+                    + "        use(\"\");\n"
+                    + "    }\n"
+                    + "}\n";
+
+    @Rule public final TemporaryFolder temp = new TemporaryFolder();
+
+    /** The test sources: rc/package-info.java, rc/Use.java, dep/Dep.java, and bar/Bar.java. */
+    private List<File> sources;
+
+    /** The directory that is passed in the "stubs" option. */
+    private File stubs;
+
+    private File cache;
+
+    @Before
+    public void setUp() throws IOException {
+        File root = temp.newFolder("src");
+        sources =
+                Arrays.asList(
+                        new File(root, "rc/package-info.java"),
+                        new File(root, "rc/Use.java"),
+                        new File(root, "dep/Dep.java"),
+                        new File(root, "bar/Bar.java"));
+        new File(root, "rc").mkdir();
+        new File(root, "dep").mkdir();
+        new File(root, "bar").mkdir();
+        stubs = temp.newFolder("stubs");
+        cache = temp.newFolder("cache");
+        write(sources.get(0), PACKAGE_INFO);
+        write(sources.get(1), USE);
+        write(sources.get(2), DEP);
+        write(sources.get(3), BAR);
+        write(new File(stubs, "string.astub"), STUB);
+    }
+
+    @Test
+    public void replaysUnchangedResults() throws IOException {
+        List<String> fresh = compile(false);
+        Assert.assertEquals(fresh, compile(true));
+        byte[] stored = cachedResults("Use");
+
+        Assert.assertEquals(fresh, compile(true));
+        Assert.assertArrayEquals(stored, cachedResults("Use"));
+    }
+
+    @Test
+    public void sourceEditInvalidates() throws IOException {
+        assertEditInvalidates(sources.get(1), USE_EDITED);
+    }
+
+    @Test
+    public void packageInfoEditInvalidates() throws IOException {
+        assertEditInvalidates(sources.get(0), PACKAGE_INFO_WITH_DEFAULT);
+    }
+
+    @Test
+    public void dependencyEditInvalidates() throws IOException {
+        assertEditInvalidates(sources.get(2), DEP_ENCRYPTED);
+    }
+
+    @Test
+    public void expressionTypeEditInvalidates() throws IOException {
+        assertEditInvalidates(sources.get(3), BAR_ENCRYPTED);
+    }
+
+    @Test
+    public void stubDirectoryEditInvalidates() throws IOException {
+        assertEditInvalidates(new File(stubs, "string.astub"), STUB_ENCRYPTED);
+    }
+
+    /**
+     * Compile with the cache, replace the content of {@code file} by {@code content}, and check
+     * that class Use is checked again, with the results of a compilation without the cache. Use is
+     * in a different package than Dep, so that only its own package-info file affects it.
+     */
+    private void assertEditInvalidates(File file, String content) throws IOException {
+        List<String> before = compile(true);
+        byte[] stored = cachedResults("Use");
+
+        write(file, content);
+        List<String> fresh = compile(false);
+        Assert.assertNotEquals("The edit does not change the diagnostics", before, fresh);
+        Assert.assertEquals(fresh, compile(true));
+        Assert.assertFalse(Arrays.equals(stored, cachedResults("Use")));
+
+        Assert.assertEquals(fresh, compile(true));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(UTF8));
+    }
+
+    /** @return the content of the cache file of class {@code name} */
+    private byte[] cachedResults(String name) throws IOException {
+        File directory = new File(cache, SubtypingChecker.class.getName());
+        return Files.readAllBytes(new File(directory, "rc." + name + ".results").toPath());
+    }
+
+    /**
+     * Compile the test sources with the Subtyping Checker.
+     *
+     * @param useCache whether to pass the "resultsCache" option
+     * @return the diagnostics of the compilation, as "kind file:line:column message"
+     */
+    private List<String> compile(boolean useCache) throws IOException {
+        List<String> options = new ArrayList<>();
+        options.add("-Anomsgtext");
+        options.add(
+                "-Aquals=testlib.util.Encrypted,testlib.util.PolyEncrypted,"
+                        + "org.checkerframework.framework.qual.Unqualified");
+        options.add("-Astubs=" + stubs.getAbsolutePath());
+        if (useCache) {
+            options.add("-AresultsCache=" + cache.getAbsolutePath());
+        }
+        TestConfiguration config =
+                TestConfigurationBuilder.getDefaultConfigurationBuilder(
+                                null,
+                                temp.newFolder(),
+                                TestConfigurationBuilder.getDefaultClassPath(),
+                                sources,
+                                Arrays.asList(SubtypingChecker.class.getName()),
+                                options,
+                                false)
+                        .validateThenBuild(true);
+        CompilationResult result = new TypecheckExecutor().compile(config);
+
+        List<String> diagnostics = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : result.getDiagnostics()) {
+            JavaFileObject source = diagnostic.getSource();
+            diagnostics.add(
+                    diagnostic.getKind()
+                            + " "
+                            + (source == null ? "" : new File(source.toUri()).getName())
+                            + ":"
+                            + diagnostic.getLineNumber()
+                            + ":"
+                            + diagnostic.getColumnNumber()
+                            + " "
+                            + diagnostic.getMessage(null));
+        }
+        return diagnostics;
+    }
+}
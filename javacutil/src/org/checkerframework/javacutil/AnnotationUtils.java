@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.ElementKind;
@@ -50,15 +51,20 @@ public class AnnotationUtils {
         annotationMirrorNames.clear();
         annotationMirrorSimpleNames.clear();
         annotationClassNames.clear();
+        internedAnnotations.clear();
     }
 
     // **********************************************************************
     // Factory Methods to create instances of AnnotationMirror
     // **********************************************************************
 
+    // The caches below are shared by all checkers in the JVM, so they must be safe for concurrent
+    // use. Each lookup is a single get, because an LRU entry can be evicted between a containsKey
+    // and a get.
+
     /** Caching for annotation creation. */
     private static final Map<CharSequence, AnnotationMirror> annotationsFromNames =
-            new HashMap<CharSequence, AnnotationMirror>();
+            new ConcurrentHashMap<CharSequence, AnnotationMirror>();
 
     private static final int ANNOTATION_CACHE_SIZE = 500;
 
@@ -67,21 +73,79 @@ public class AnnotationUtils {
      * so they can be compared with ==.
      */
     private static final Map<AnnotationMirror, /*@Interned*/ String> annotationMirrorNames =
-            CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE);
+            Collections.synchronizedMap(
+                    CollectionUtils.<AnnotationMirror, /*@Interned*/ String>createLRUCache(
+                            "AnnotationUtils.annotationMirrorNames", ANNOTATION_CACHE_SIZE));
 
     /**
      * Cache simple names of AnnotationMirrors for faster access. Values in the map are interned
      * Strings, so they can be compared with ==.
      */
     private static final Map<AnnotationMirror, /*@Interned*/ String> annotationMirrorSimpleNames =
-            CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE);
+            Collections.synchronizedMap(
+                    CollectionUtils.<AnnotationMirror, /*@Interned*/ String>createLRUCache(
+                            "AnnotationUtils.annotationMirrorSimpleNames", ANNOTATION_CACHE_SIZE));
 
     /**
      * Cache names of classes representing AnnotationMirrors for faster access. Values in the map
      * are interned Strings, so they can be compared with ==.
      */
     private static final Map<Class<? extends Annotation>, /*@Interned*/ String>
-            annotationClassNames = new HashMap<Class<? extends Annotation>, /*@Interned*/ String>();
+            annotationClassNames =
+                    new ConcurrentHashMap<Class<? extends Annotation>, /*@Interned*/ String>();
+
+    private static final int INTERNED_ANNOTATIONS_CACHE_SIZE = 2000;
+
+    /**
+     * The annotations created by {@link #intern}, keyed by annotation type and element values. An
+     * annotation that is evicted is simply created again; equality does not depend on identity.
+     */
+    private static final Map<String, InternedAnnotationMirror> internedAnnotations =
+            Collections.synchronizedMap(
+                    CollectionUtils.<String, InternedAnnotationMirror>createLRUCache(
+                            "AnnotationUtils.internedAnnotations",
+                            INTERNED_ANNOTATIONS_CACHE_SIZE));
+
+    /**
+     * Returns the annotation with the given type and element values. Equal annotations that are
+     * created repeatedly, for example by {@code AnnotationBuilder}, share one instance, and
+     * instances can be compared by {@link #areSame} without looking at their element values.
+     *
+     * @param annotationType the annotation type
+     * @param elementValues the explicitly given element values; copied
+     * @return an annotation with the given type and element values
+     */
+    public static AnnotationMirror intern(
+            DeclaredType annotationType,
+            Map<? extends ExecutableElement, ? extends AnnotationValue> elementValues) {
+        StringBuilder key =
+                new StringBuilder(InternedAnnotationMirror.format(annotationType, elementValues));
+        // Values that print alike may have different classes, such as 1 and 1L.
+        for (AnnotationValue value : elementValues.values()) {
+            appendValueClasses(key, value.getValue());
+        }
+        String k = key.toString();
+        InternedAnnotationMirror result = internedAnnotations.get(k);
+        if (result == null) {
+            result = new InternedAnnotationMirror(annotationType, elementValues);
+            internedAnnotations.put(k, result);
+        }
+        return result;
+    }
+
+    /** Append the classes of {@code value} and, if it is a list, of its elements to {@code key}. */
+    private static void appendValueClasses(StringBuilder key, Object value) {
+        key.append(' ').append(value.getClass().getName());
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                appendValueClasses(
+                        key,
+                        element instanceof AnnotationValue
+                                ? ((AnnotationValue) element).getValue()
+                                : element);
+            }
+        }
+    }
 
     /**
      * Creates an {@link AnnotationMirror} given by a particular fully-qualified name.
@@ -92,8 +156,9 @@ public class AnnotationUtils {
      * @return an {@link AnnotationMirror} of type {@code} name
      */
     public static AnnotationMirror fromName(Elements elements, CharSequence name) {
-        if (annotationsFromNames.containsKey(name)) {
-            return annotationsFromNames.get(name);
+        AnnotationMirror cached = annotationsFromNames.get(name);
+        if (cached != null) {
+            return cached;
         }
         final DeclaredType annoType = typeFromName(elements, name);
         if (annoType == null) {
@@ -104,25 +169,7 @@ public class AnnotationUtils {
             return null; // dead code
         }
         AnnotationMirror result =
-                new AnnotationMirror() {
-                    String toString = "@" + annoType;
-
-                    @Override
-                    public DeclaredType getAnnotationType() {
-                        return annoType;
-                    }
-
-                    @Override
-                    public Map<? extends ExecutableElement, ? extends AnnotationValue>
-                            getElementValues() {
-                        return Collections.emptyMap();
-                    }
-                    /*@SideEffectFree*/
-                    @Override
-                    public String toString() {
-                        return toString;
-                    }
-                };
+                intern(annoType, Collections.<ExecutableElement, AnnotationValue>emptyMap());
         annotationsFromNames.put(name, result);
         return result;
     }
@@ -163,26 +210,31 @@ public class AnnotationUtils {
 
     /** @return the fully-qualified name of an annotation as a String */
     public static final /*@Interned*/ String annotationName(AnnotationMirror annotation) {
-        if (annotationMirrorNames.containsKey(annotation)) {
-            return annotationMirrorNames.get(annotation);
+        if (annotation instanceof InternedAnnotationMirror) {
+            return ((InternedAnnotationMirror) annotation).getName();
+        }
+        /*@Interned*/ String name = annotationMirrorNames.get(annotation);
+        if (name != null) {
+            return name;
         }
 
         final DeclaredType annoType = annotation.getAnnotationType();
         final TypeElement elm = (TypeElement) annoType.asElement();
-        /*@Interned*/ String name = elm.getQualifiedName().toString().intern();
+        name = elm.getQualifiedName().toString().intern();
         annotationMirrorNames.put(annotation, name);
         return name;
     }
 
     /** @return the simple name of an annotation as a String */
     public static String annotationSimpleName(AnnotationMirror annotation) {
-        if (annotationMirrorSimpleNames.containsKey(annotation)) {
-            return annotationMirrorSimpleNames.get(annotation);
+        /*@Interned*/ String name = annotationMirrorSimpleNames.get(annotation);
+        if (name != null) {
+            return name;
         }
 
         final DeclaredType annoType = annotation.getAnnotationType();
         final TypeElement elm = (TypeElement) annoType.asElement();
-        /*@Interned*/ String name = elm.getSimpleName().toString().intern();
+        name = elm.getSimpleName().toString().intern();
         annotationMirrorSimpleNames.put(annotation, name);
         return name;
     }
@@ -199,6 +251,13 @@ public class AnnotationUtils {
      */
     public static boolean areSame(
             /*@Nullable*/ AnnotationMirror a1, /*@Nullable*/ AnnotationMirror a2) {
+        if (a1 == a2) {
+            return true;
+        }
+        if (a1 instanceof InternedAnnotationMirror && a2 instanceof InternedAnnotationMirror) {
+            return ((InternedAnnotationMirror) a1).getSameKey()
+                    == ((InternedAnnotationMirror) a2).getSameKey();
+        }
         if (a1 != null && a2 != null) {
             if (annotationName(a1) != annotationName(a2)) {
                 return false;
@@ -235,10 +294,8 @@ public class AnnotationUtils {
 
     /** Checks that the annotation {@code am} has the name of {@code anno}. Values are ignored. */
     public static boolean areSameByClass(AnnotationMirror am, Class<? extends Annotation> anno) {
-        /*@Interned*/ String canonicalName;
-        if (annotationClassNames.containsKey(anno)) {
-            canonicalName = annotationClassNames.get(anno);
-        } else {
+        /*@Interned*/ String canonicalName = annotationClassNames.get(anno);
+        if (canonicalName == null) {
             canonicalName = anno.getCanonicalName().intern();
             annotationClassNames.put(anno, canonicalName);
         }
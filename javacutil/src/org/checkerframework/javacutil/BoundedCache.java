@@ -0,0 +1,321 @@
+package org.checkerframework.javacutil;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map of bounded total weight that evicts entries with a segmented LRU policy, and counts hits,
+ * misses, and evictions.
+ *
+ * <p>New entries enter the <em>probationary</em> segment. An entry that is read while it is
+ * probationary is promoted to the <em>protected</em> segment, which may hold at most a fixed
+ * fraction of the total weight; the least-recently-used protected entries are demoted back to the
+ * probationary segment when it overflows. Entries are evicted from the least-recently-used end of
+ * the probationary segment first. This keeps entries that are read repeatedly in the cache even
+ * when many entries are read only once. With a protected fraction of 0, the policy is plain LRU.
+ *
+ * <p>A cache in insertion order has no protected segment, and reads do not reorder its entries: it
+ * evicts the entries that were stored first, like a {@link LinkedHashMap} in insertion order whose
+ * {@code removeEldestEntry} bounds its size. Storing a new value for a key keeps its position.
+ *
+ * <p>Each entry has a weight, computed by a {@link Weigher} when the entry is stored; by default,
+ * every entry has weight 1, so that the maximal weight bounds the number of entries.
+ *
+ * <p>Only {@link #get} counts as a read: {@link #containsKey} neither promotes an entry nor counts
+ * as a hit or miss. The views returned by {@link #entrySet}, {@link #keySet}, and {@link #values}
+ * are unmodifiable snapshots. This class is not thread-safe.
+ *
+ * @see CollectionUtils#createLRUCache(String, int)
+ * @see CollectionUtils#createLRUCache(String, long, Weigher)
+ * @see CollectionUtils#createSegmentedLRUCache(String, long, Weigher)
+ */
+public class BoundedCache<K, V> extends AbstractMap<K, V> {
+
+    /** Computes the weight of a cache entry. */
+    public interface Weigher<K, V> {
+        /** @return the weight of the entry from {@code key} to {@code value}; not negative */
+        int weigh(K key, V value);
+    }
+
+    /** The value and weight of a cache entry. */
+    private static final class CacheEntry<V> {
+        final V value;
+        final int weight;
+
+        CacheEntry(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** The name of this cache, used in statistics, or {@code null}. */
+    private final /*@Nullable*/ String name;
+
+    /** The maximal total weight of all entries. */
+    private final long maxWeight;
+
+    /** The maximal total weight of the protected entries. */
+    private final long maxProtectedWeight;
+
+    /** The weigher for entries, or {@code null} if every entry has weight 1. */
+    private final /*@Nullable*/ Weigher<? super K, ? super V> weigher;
+
+    /** Whether reads reorder the entries; if false, the entries are in insertion order. */
+    private final boolean accessOrder;
+
+    /** The probationary entries, in least-recently-used or in insertion order. */
+    private final LinkedHashMap<K, CacheEntry<V>> probation;
+
+    /** The protected entries, in least-recently-used order. */
+    private final LinkedHashMap<K, CacheEntry<V>> protectedEntries =
+            new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true);
+
+    /** The total weight of the probationary entries. */
+    private long probationWeight;
+
+    /** The total weight of the protected entries. */
+    private long protectedWeight;
+
+    /** The number of reads that found an entry. */
+    private long hits;
+
+    /** The number of reads that found no entry. */
+    private long misses;
+
+    /** The number of entries evicted because the cache was full. */
+    private long evictions;
+
+    /**
+     * Create a new cache.
+     *
+     * @param name the name of the cache, used in statistics, or {@code null}
+     * @param maxWeight the maximal total weight of all entries
+     * @param protectedFraction the fraction of {@code maxWeight} that protected entries may use;
+     *     between 0 (plain LRU) and 1
+     * @param weigher the weigher for entries, or {@code null} if every entry has weight 1
+     */
+    public BoundedCache(
+            /*@Nullable*/ String name,
+            long maxWeight,
+            double protectedFraction,
+            /*@Nullable*/ Weigher<? super K, ? super V> weigher) {
+        this(name, maxWeight, protectedFraction, true, weigher);
+    }
+
+    /**
+     * Create a new cache that evicts entries in insertion order.
+     *
+     * @param name the name of the cache, used in statistics, or {@code null}
+     * @param maxWeight the maximal total weight of all entries
+     * @param weigher the weigher for entries, or {@code null} if every entry has weight 1
+     * @return a new cache
+     */
+    public static <K, V> BoundedCache<K, V> inInsertionOrder(
+            /*@Nullable*/ String name,
+            long maxWeight,
+            /*@Nullable*/ Weigher<? super K, ? super V> weigher) {
+        return new BoundedCache<K, V>(name, maxWeight, 0, false, weigher);
+    }
+
+    private BoundedCache(
+            /*@Nullable*/ String name,
+            long maxWeight,
+            double protectedFraction,
+            boolean accessOrder,
+            /*@Nullable*/ Weigher<? super K, ? super V> weigher) {
+        assert maxWeight >= 0 : "negative maximal weight: " + maxWeight;
+        assert protectedFraction >= 0 && protectedFraction <= 1
+                : "protected fraction out of range: " + protectedFraction;
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.maxProtectedWeight = (long) (maxWeight * protectedFraction);
+        this.weigher = weigher;
+        this.accessOrder = accessOrder;
+        this.probation = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, accessOrder);
+    }
+
+    @Override
+    public /*@Nullable*/ V get(Object key) {
+        if (!accessOrder) {
+            CacheEntry<V> entry = probation.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            return entry.value;
+        }
+        CacheEntry<V> entry = protectedEntries.get(key);
+        if (entry != null) {
+            hits++;
+            return entry.value;
+        }
+        entry = probation.remove(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        probationWeight -= entry.weight;
+        @SuppressWarnings("unchecked") // key was a key of probation
+        K k = (K) key;
+        protectedEntries.put(k, entry);
+        protectedWeight += entry.weight;
+        demoteProtectedEntries();
+        return entry.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return protectedEntries.containsKey(key) || probation.containsKey(key);
+    }
+
+    @Override
+    public /*@Nullable*/ V put(K key, V value) {
+        int weight = weigher == null ? 1 : weigher.weigh(key, value);
+        CacheEntry<V> entry = new CacheEntry<V>(value, weight);
+        CacheEntry<V> old = protectedEntries.remove(key);
+        if (old != null) {
+            protectedWeight -= old.weight;
+            protectedEntries.put(key, entry);
+            protectedWeight += entry.weight;
+            demoteProtectedEntries();
+        } else {
+            // Moves the key to the most-recently-used end only in access order.
+            old = probation.put(key, entry);
+            if (old != null) {
+                probationWeight -= old.weight;
+            }
+            probationWeight += entry.weight;
+        }
+        evictEntries();
+        return old == null ? null : old.value;
+    }
+
+    @Override
+    public /*@Nullable*/ V remove(Object key) {
+        CacheEntry<V> old = protectedEntries.remove(key);
+        if (old != null) {
+            protectedWeight -= old.weight;
+            return old.value;
+        }
+        old = probation.remove(key);
+        if (old != null) {
+            probationWeight -= old.weight;
+            return old.value;
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        probation.clear();
+        protectedEntries.clear();
+        probationWeight = 0;
+        protectedWeight = 0;
+    }
+
+    @Override
+    public int size() {
+        return probation.size() + protectedEntries.size();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        Set<Map.Entry<K, V>> result = new HashSet<>();
+        for (Map.Entry<K, CacheEntry<V>> e : probation.entrySet()) {
+            result.add(new SimpleImmutableEntry<K, V>(e.getKey(), e.getValue().value));
+        }
+        for (Map.Entry<K, CacheEntry<V>> e : protectedEntries.entrySet()) {
+            result.add(new SimpleImmutableEntry<K, V>(e.getKey(), e.getValue().value));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /** Move least-recently-used protected entries to the probationary segment until it fits. */
+    private void demoteProtectedEntries() {
+        Iterator<Map.Entry<K, CacheEntry<V>>> it = protectedEntries.entrySet().iterator();
+        while (protectedWeight > maxProtectedWeight && it.hasNext()) {
+            Map.Entry<K, CacheEntry<V>> eldest = it.next();
+            it.remove();
+            protectedWeight -= eldest.getValue().weight;
+            probation.put(eldest.getKey(), eldest.getValue());
+            probationWeight += eldest.getValue().weight;
+        }
+    }
+
+    /**
+     * Evict least-recently-used (or, in insertion order, the oldest) entries, probationary ones
+     * first, until the cache fits.
+     */
+    private void evictEntries() {
+        while (probationWeight + protectedWeight > maxWeight) {
+            LinkedHashMap<K, CacheEntry<V>> segment =
+                    probation.isEmpty() ? protectedEntries : probation;
+            Iterator<CacheEntry<V>> it = segment.values().iterator();
+            int weight = it.next().weight;
+            it.remove();
+            if (segment == probation) {
+                probationWeight -= weight;
+            } else {
+                protectedWeight -= weight;
+            }
+            evictions++;
+        }
+    }
+
+    /** @return the name of this cache, or {@code null} */
+    public /*@Nullable*/ String getName() {
+        return name;
+    }
+
+    /** @return the total weight of all entries */
+    public long getWeight() {
+        return probationWeight + protectedWeight;
+    }
+
+    /** @return the number of reads that found an entry */
+    public long getHits() {
+        return hits;
+    }
+
+    /** @return the number of reads that found no entry */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** @return the number of entries evicted because the cache was full */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** @return a one-line summary of the size and the counters of this cache */
+    public String getStatistics() {
+        long reads = hits + misses;
+        return (name == null ? "cache" : name)
+                + ": "
+                + size()
+                + " entries, weight "
+                + getWeight()
+                + "/"
+                + maxWeight
+                + ", "
+                + hits
+                + " hits, "
+                + misses
+                + " misses"
+                + (reads == 0 ? "" : " (" + (100 * hits / reads) + "% hits)")
+                + ", "
+                + evictions
+                + " evictions";
+    }
+}
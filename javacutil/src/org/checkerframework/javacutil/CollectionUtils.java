@@ -1,26 +1,103 @@
 package org.checkerframework.javacutil;
 
-import java.util.LinkedHashMap;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /** Utility methods related to Java Collections */
 public class CollectionUtils {
 
+    /** Fraction of a segmented LRU cache that entries which were read more than once may use. */
+    private static final double PROTECTED_FRACTION = 0.8;
+
+    /** The named caches created so far, for {@link #getCacheStatistics()}. */
+    private static final List<WeakReference<BoundedCache<?, ?>>> namedCaches = new ArrayList<>();
+
     /**
-     * A Utility method for creating LRU cache
+     * A Utility method for creating LRU cache. The cache evicts the entries that were stored first;
+     * reading an entry does not change its position.
      *
      * @param size size of the cache
      * @return a new cache with the provided size
      */
     public static <K, V> Map<K, V> createLRUCache(final int size) {
-        return new LinkedHashMap<K, V>() {
+        return BoundedCache.inInsertionOrder(null, size, null);
+    }
+
+    /**
+     * Create an LRU cache whose statistics are reported by {@link #getCacheStatistics()}. Like
+     * {@link #createLRUCache(int)}, the cache evicts the entries that were stored first.
+     *
+     * @param name the name of the cache in statistics
+     * @param size size of the cache
+     * @return a new cache with the provided size
+     */
+    public static <K, V> Map<K, V> createLRUCache(String name, int size) {
+        return register(BoundedCache.<K, V>inInsertionOrder(name, size, null));
+    }
+
+    /**
+     * Create an LRU cache of bounded total weight, whose statistics are reported by {@link
+     * #getCacheStatistics()}. Like {@link #createLRUCache(int)}, the cache evicts the entries that
+     * were stored first.
+     *
+     * @param name the name of the cache in statistics
+     * @param maxWeight the maximal total weight of the entries
+     * @param weigher the weigher for entries, or {@code null} if every entry has weight 1
+     * @return a new cache
+     */
+    public static <K, V> Map<K, V> createLRUCache(
+            String name, long maxWeight, BoundedCache.Weigher<? super K, ? super V> weigher) {
+        return register(BoundedCache.<K, V>inInsertionOrder(name, maxWeight, weigher));
+    }
+
+    /**
+     * Create a cache with a segmented LRU policy, whose statistics are reported by {@link
+     * #getCacheStatistics()}. See {@link BoundedCache} for the policy.
+     *
+     * @param name the name of the cache in statistics
+     * @param maxWeight the maximal total weight of the entries
+     * @param weigher the weigher for entries, or {@code null} if every entry has weight 1
+     * @return a new cache
+     */
+    public static <K, V> Map<K, V> createSegmentedLRUCache(
+            String name, long maxWeight, BoundedCache.Weigher<? super K, ? super V> weigher) {
+        return register(new BoundedCache<K, V>(name, maxWeight, PROTECTED_FRACTION, weigher));
+    }
 
-            private static final long serialVersionUID = 5261489276168775084L;
+    /**
+     * Remember {@code cache} for {@link #getCacheStatistics()}, and forget the caches that were
+     * garbage-collected, so that creating many short-lived caches does not leak references.
+     */
+    private static <K, V> BoundedCache<K, V> register(BoundedCache<K, V> cache) {
+        synchronized (namedCaches) {
+            Iterator<WeakReference<BoundedCache<?, ?>>> it = namedCaches.iterator();
+            while (it.hasNext()) {
+                if (it.next().get() == null) {
+                    it.remove();
+                }
+            }
+            namedCaches.add(new WeakReference<BoundedCache<?, ?>>(cache));
+        }
+        return cache;
+    }
 
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<K, V> entry) {
-                return size() > size;
+    /** @return a one-line summary of each named cache that is still in use */
+    public static List<String> getCacheStatistics() {
+        List<String> result = new ArrayList<>();
+        synchronized (namedCaches) {
+            Iterator<WeakReference<BoundedCache<?, ?>>> it = namedCaches.iterator();
+            while (it.hasNext()) {
+                BoundedCache<?, ?> cache = it.next().get();
+                if (cache == null) {
+                    it.remove();
+                } else {
+                    result.add(cache.getStatistics());
+                }
             }
-        };
+        }
+        return result;
     }
 }
@@ -0,0 +1,121 @@
+package org.checkerframework.javacutil;
+
+/*>>>
+import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.checkerframework.checker.interning.qual.*;
+import org.checkerframework.checker.nullness.qual.*;
+*/
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+
+/**
+ * An {@link AnnotationMirror} created by the Checker Framework, rather than read by the compiler.
+ * Instances are only created by {@link AnnotationUtils#intern}, so that equal annotations that are
+ * built repeatedly share one instance.
+ *
+ * <p>An instance caches its name, its string representation, and a key that determines {@link
+ * AnnotationUtils#areSame}, so comparing two instances does not look up or format element values.
+ */
+public final class InternedAnnotationMirror implements AnnotationMirror {
+
+    /** The type of this annotation. */
+    private final DeclaredType annotationType;
+
+    /** The explicitly given element values of this annotation. */
+    private final Map<ExecutableElement, AnnotationValue> elementValues;
+
+    /** The fully-qualified name of the annotation type. */
+    private final /*@Interned*/ String name;
+
+    /** The string representation of this annotation, such as "@A(x=1)". */
+    private final String toString;
+
+    /**
+     * The name and all element values, including defaults, of this annotation; computed lazily by
+     * {@link #getSameKey}. Two instances are the same according to {@link AnnotationUtils#areSame}
+     * iff their keys are identical.
+     */
+    private /*@Interned*/ String sameKey;
+
+    InternedAnnotationMirror(
+            DeclaredType annotationType,
+            Map<? extends ExecutableElement, ? extends AnnotationValue> elementValues) {
+        this.annotationType = annotationType;
+        this.elementValues =
+                Collections.unmodifiableMap(
+                        new LinkedHashMap<ExecutableElement, AnnotationValue>(elementValues));
+        this.name =
+                ((TypeElement) annotationType.asElement()).getQualifiedName().toString().intern();
+        this.toString = format(annotationType, elementValues);
+    }
+
+    @Override
+    public DeclaredType getAnnotationType() {
+        return annotationType;
+    }
+
+    @Override
+    public Map<? extends ExecutableElement, ? extends AnnotationValue> getElementValues() {
+        return elementValues;
+    }
+
+    /** @return the fully-qualified name of the annotation type */
+    /*@Interned*/ String getName() {
+        return name;
+    }
+
+    /** @return the key that determines {@link AnnotationUtils#areSame}, see {@link #sameKey} */
+    /*@Interned*/ String getSameKey() {
+        /*@Interned*/ String key = sameKey;
+        if (key == null) {
+            key = (name + AnnotationUtils.getElementValuesWithDefaults(this)).intern();
+            sameKey = key;
+        }
+        return key;
+    }
+
+    /*@SideEffectFree*/
+    @Override
+    public String toString() {
+        return toString;
+    }
+
+    /**
+     * Format an annotation as "@A", "@A(1)" for a single element named "value", or "@A(x=1, y=2)".
+     */
+    static String format(
+            DeclaredType annotationType,
+            Map<? extends ExecutableElement, ? extends AnnotationValue> elementValues) {
+        StringBuilder buf = new StringBuilder();
+        buf.append("@");
+        buf.append(annotationType);
+        int len = elementValues.size();
+        if (len > 0) {
+            buf.append('(');
+            boolean first = true;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> pair :
+                    elementValues.entrySet()) {
+                if (!first) {
+                    buf.append(", ");
+                }
+                first = false;
+
+                String name = pair.getKey().getSimpleName().toString();
+                if (len > 1 || !name.equals("value")) {
+                    buf.append(name);
+                    buf.append('=');
+                }
+                buf.append(pair.getValue());
+            }
+            buf.append(')');
+        }
+        return buf.toString();
+    }
+}